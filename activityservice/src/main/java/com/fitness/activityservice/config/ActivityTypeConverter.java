@@ -0,0 +1,19 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.model.ActivityType;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds request parameters such as ?type=running the same way request bodies
+ * are read, case-insensitively and with the aliases of
+ * {@link ActivityType#fromValue}, instead of the exact enum name.
+ */
+@Component
+public class ActivityTypeConverter implements Converter<String, ActivityType> {
+
+    @Override
+    public ActivityType convert(String source) {
+        return ActivityType.fromValue(source);
+    }
+}
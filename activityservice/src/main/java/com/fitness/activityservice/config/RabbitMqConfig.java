@@ -1,4 +1,5 @@
 package com.fitness.activityservice.config;
+import com.fitness.common.amqp.SmileMessageConverter;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
@@ -19,9 +20,37 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.Key}")
     private String routeKey;
 
+    @Value("${rabbitmq.dead-letter.exchange:activity.dlx}")
+    private String deadLetterExchange;
+
+    @Value("${rabbitmq.dead-letter.queue:activity.queue.dlq}")
+    private String deadLetterQueue;
+
+    /**
+     * Declared with the same arguments by activityservice and aiservice;
+     * activities aiservice rejects without requeueing are routed to the
+     * dead-letter queue under their original routing key.
+     */
     @Bean
     public Queue activityQueue() {
-        return new Queue(queue, true);
+        return QueueBuilder.durable(queue)
+                .deadLetterExchange(deadLetterExchange)
+                .build();
+    }
+
+    @Bean
+    public DirectExchange activityDeadLetterExchange() {
+        return new DirectExchange(deadLetterExchange);
+    }
+
+    @Bean
+    public Queue activityDeadLetterQueue() {
+        return QueueBuilder.durable(deadLetterQueue).build();
+    }
+
+    @Bean
+    public Binding activityDeadLetterBinding(Queue activityDeadLetterQueue, DirectExchange activityDeadLetterExchange) {
+        return BindingBuilder.bind(activityDeadLetterQueue).to(activityDeadLetterExchange).with(routeKey);
     }
 
     @Bean
@@ -35,8 +64,14 @@ public class RabbitMqConfig {
 
     }
 
+    @Value("${rabbitmq.codec:json}")
+    private String codec;
+
     @Bean
     public MessageConverter messageConverter() {
+        if ("smile".equalsIgnoreCase(codec)) {
+            return new SmileMessageConverter();
+        }
         return new Jackson2JsonMessageConverter();
     }
 
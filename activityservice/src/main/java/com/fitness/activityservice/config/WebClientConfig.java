@@ -1,18 +1,25 @@
 package com.fitness.activityservice.config;
 
+import com.fitness.common.loadbalancer.InstanceLatencyStats;
+import com.fitness.common.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+@Import(InstanceLatencyStats.class)
 public class WebClientConfig {
 
     @Bean
     @LoadBalanced
-    public WebClient.Builder webClientBuilder(){
-
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ObservationRegistry observationRegistry){
+        // records http.client.requests per service and uri template
+        return WebClient.builder().observationRegistry(observationRegistry);
     }
 
     @Bean
@@ -1,37 +1,92 @@
 package com.fitness.activityservice.controller;
 
+import com.fitness.activityservice.dto.ActivityBatchResponse;
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivitySummaryResponse;
+import com.fitness.activityservice.dto.MetricSeriesResponse;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupPeriod;
+import com.fitness.activityservice.service.ActivityBatchService;
+import com.fitness.activityservice.service.ActivityRollupService;
 import com.fitness.activityservice.service.ActivityService;
+import com.fitness.activityservice.service.MetricSeriesService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/activities")
 @AllArgsConstructor
 public class ActivityController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private ActivityService  activityService;
+    private ActivityBatchService activityBatchService;
+    private ActivityRollupService activityRollupService;
+    private MetricSeriesService metricSeriesService;
 
     @PostMapping
-    public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-ID") String userId){
+    public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-ID") String userId,
+                                                          @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey){
         if(userId != null){
             request.setUserId(userId);
         }
-        return ResponseEntity.ok(activityService.trackActivity(request));
+        return ResponseEntity.ok(activityService.trackActivity(request, idempotencyKey));
+
+    }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ActivityBatchResponse> trackActivities(HttpServletRequest request, @RequestHeader("X-User-ID") String userId) throws IOException {
+        return ResponseEntity.ok(activityBatchService.trackActivities(userId, request.getInputStream()));
     }
+
     @GetMapping
-    public ResponseEntity<List<ActivityResponse>> getUserActivities(@RequestHeader("X-User-ID")  String userId){
-            return ResponseEntity.ok(activityService.getUserActivities(userId));
+    public ResponseEntity<List<ActivityResponse>> getUserActivities(@RequestHeader("X-User-ID")  String userId,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "50") int limit,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                    @RequestParam(required = false) ActivityType type){
+        ActivityPage page = activityService.getUserActivities(userId, cursor, limit, from, to, type);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
 
     }
 
+    @GetMapping("/summary")
+    public ResponseEntity<List<ActivitySummaryResponse>> getUserSummary(@RequestHeader("X-User-ID") String userId,
+                                                                        @RequestParam(defaultValue = "WEEK") RollupPeriod period,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        return ResponseEntity.ok(activityRollupService.getSummary(userId, period, from, to));
+    }
+
     @GetMapping("/{activityId}")
     public ResponseEntity<ActivityResponse> getActivityById(@PathVariable("activityId")  String activityId){
         return ResponseEntity.ok(activityService.getActivityById(activityId));
 
     }
+
+    @GetMapping("/{activityId}/series/{metric}")
+    public ResponseEntity<MetricSeriesResponse> getActivitySeries(@PathVariable("activityId") String activityId,
+                                                                  @PathVariable("metric") String metric,
+                                                                  @RequestParam(defaultValue = "500") int points,
+                                                                  @RequestParam(required = false) Duration window){
+        return ResponseEntity.ok(metricSeriesService.downsample(activityId, metric, points, window));
+    }
 }
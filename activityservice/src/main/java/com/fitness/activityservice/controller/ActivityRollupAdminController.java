@@ -0,0 +1,30 @@
+package com.fitness.activityservice.controller;
+
+import com.fitness.activityservice.service.ActivityRollupService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Backfills activity_rollups from the activities collection. Mapped outside
+ * /api so the gateway does not expose it, and callers need a token with the
+ * admin.scope scope (see AdminEndpointSecurityAutoConfiguration in the common
+ * module).
+ */
+@RestController
+@RequestMapping("/admin/activity-rollups")
+@AllArgsConstructor
+public class ActivityRollupAdminController {
+    private ActivityRollupService activityRollupService;
+
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild(@RequestParam(required = false) String userId){
+        return activityRollupService.startRebuild(userId)
+                ? ResponseEntity.status(HttpStatus.ACCEPTED).build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ActivityBatchItemResult {
+    private int index;
+    private String id;
+    private Status status;
+    private String error;
+
+    public enum Status {
+        /** Stored and confirmed by the broker, or stored in the outbox when outbox mode is on. */
+        CREATED,
+        /** Stored, but the broker did not confirm the publish; no recommendation will be generated for it yet. */
+        STORED_NOT_PUBLISHED,
+        /** Not stored because the item itself was invalid. */
+        REJECTED,
+        /** Not stored because the database write failed. */
+        FAILED
+    }
+}
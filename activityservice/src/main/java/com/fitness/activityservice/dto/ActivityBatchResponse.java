@@ -0,0 +1,24 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ActivityBatchResponse {
+    private int received;
+    private int created;
+    private int rejected;
+    private List<ActivityBatchItemResult> items = new ArrayList<>();
+
+    public void add(ActivityBatchItemResult result) {
+        items.add(result);
+        received++;
+        if (result.getStatus() == ActivityBatchItemResult.Status.CREATED) {
+            created++;
+        } else if (result.getStatus() != ActivityBatchItemResult.Status.STORED_NOT_PUBLISHED) {
+            rejected++;
+        }
+    }
+}
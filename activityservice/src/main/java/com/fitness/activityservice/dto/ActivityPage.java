@@ -0,0 +1,13 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ActivityPage {
+    private List<ActivityResponse> items;
+    private String nextCursor;
+}
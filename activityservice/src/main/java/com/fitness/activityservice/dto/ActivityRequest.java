@@ -14,5 +14,6 @@ public class ActivityRequest {
     private Integer caloriesBurned;
     private LocalDateTime startTime;
     private Map<String, Object> additionalMetrics;
+    private Map<String, MetricSeriesRequest> series;
 
 }
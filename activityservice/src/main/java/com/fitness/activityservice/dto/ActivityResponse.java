@@ -1,6 +1,7 @@
 package com.fitness.activityservice.dto;
 
 import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.MetricSummary;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -15,6 +16,7 @@ public class ActivityResponse {
     private Integer caloriesBurned;
     private LocalDateTime startTime;
     private Map<String, Object> additionalMetrics;
+    private Map<String, MetricSummary> seriesSummaries;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -0,0 +1,32 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.RollupTotals;
+import lombok.Data;
+
+@Data
+public class ActivityStats {
+    private long count;
+    private long totalDuration;
+    private double meanDuration;
+    private long totalCalories;
+    private double meanCalories;
+    private double caloriesPerMinute;
+
+    public static ActivityStats of(RollupTotals totals) {
+        ActivityStats stats = new ActivityStats();
+        if (totals == null) {
+            return stats;
+        }
+        stats.setCount(totals.getCount());
+        stats.setTotalDuration(totals.getTotalDuration());
+        stats.setTotalCalories(totals.getTotalCalories());
+        if (totals.getCount() > 0) {
+            stats.setMeanDuration((double) totals.getTotalDuration() / totals.getCount());
+            stats.setMeanCalories((double) totals.getTotalCalories() / totals.getCount());
+        }
+        if (totals.getTotalDuration() > 0) {
+            stats.setCaloriesPerMinute((double) totals.getTotalCalories() / totals.getTotalDuration());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,16 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupPeriod;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+public class ActivitySummaryResponse {
+    private RollupPeriod period;
+    private LocalDate bucketStart;
+    private ActivityStats total;
+    private Map<ActivityType, ActivityStats> byType;
+}
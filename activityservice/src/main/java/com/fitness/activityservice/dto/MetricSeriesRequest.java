@@ -0,0 +1,14 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+/**
+ * Raw samples of one metric, e.g. heart rate or speed. offsets[i] is the time
+ * of values[i] in milliseconds since the activity's startTime, in
+ * non-decreasing order.
+ */
+@Data
+public class MetricSeriesRequest {
+    private long[] offsets;
+    private double[] values;
+}
@@ -0,0 +1,24 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A downsampled series in columnar form: element i of every array describes
+ * the window starting at offsets[i] milliseconds since startTime. Windows
+ * without samples are left out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricSeriesResponse {
+    private String activityId;
+    private String metric;
+    private long windowMillis;
+    private long[] offsets;
+    private double[] min;
+    private double[] max;
+    private double[] avg;
+    private int[] count;
+}
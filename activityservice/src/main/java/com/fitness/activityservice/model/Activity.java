@@ -1,5 +1,6 @@
 package com.fitness.activityservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -28,6 +29,8 @@ public class Activity {
     private LocalDateTime startTime;
     @Field("metrics")
     private Map<String, Object> additionalMetrics;
+    // Summaries of the sample series; the samples live in activity_series
+    private Map<String, MetricSummary> seriesSummaries;
 
     @CreatedDate
     private LocalDateTime createdAt;
@@ -35,4 +38,20 @@ public class Activity {
     @LastModifiedDate
     private LocalDateTime updatedAt;
 
+    // Outbox state: set while the activity event still has to be published,
+    // removed by ActivityOutboxRelay once the broker confirmed it
+    @JsonIgnore
+    private Boolean outboxPending;
+    @JsonIgnore
+    private LocalDateTime publishedAt;
+    // Relay lease: the relay batch that claimed the pending event and until when
+    @JsonIgnore
+    private String relayOwner;
+    @JsonIgnore
+    private LocalDateTime lockedUntil;
+
+    // Client supplied Idempotency-Key, unique per user
+    @JsonIgnore
+    private String idempotencyKey;
+
 }
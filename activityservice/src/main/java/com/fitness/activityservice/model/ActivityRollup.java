@@ -0,0 +1,35 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Aggregates of one user's activities for one day, week or month. Documents
+ * are only ever changed with $inc, so concurrent writers never overwrite each
+ * other's counts.
+ */
+@Document(collection = "activity_rollups")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityRollup {
+    @Id
+    private String id;
+    private String userId;
+    private RollupPeriod period;
+    private LocalDate bucketStart;
+    private RollupTotals total;
+    private Map<String, RollupTotals> types;
+
+    public static String idOf(String userId, RollupPeriod period, LocalDate bucketStart) {
+        return userId + ":" + period + ":" + bucketStart;
+    }
+}
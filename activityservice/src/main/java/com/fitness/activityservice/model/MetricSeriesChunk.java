@@ -0,0 +1,54 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A run of consecutive samples of one metric of one activity. Samples are
+ * packed little-endian into binary fields, offsets as int milliseconds after
+ * baseOffset and values as doubles, so a chunk decodes straight into
+ * primitive arrays. The chunk's own min/max/sum let downsampling skip
+ * decoding when the whole chunk falls into one window.
+ */
+@Document(collection = "activity_series")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetricSeriesChunk {
+    @Id
+    private String id;
+    private String activityId;
+    private String metric;
+    private int seq;
+    private int count;
+    private long baseOffset;
+    private long lastOffset;
+    private double min;
+    private double max;
+    private double sum;
+    private byte[] offsets;
+    private byte[] values;
+
+    public long[] decodeOffsets() {
+        ByteBuffer buffer = ByteBuffer.wrap(offsets).order(ByteOrder.LITTLE_ENDIAN);
+        long[] decoded = new long[count];
+        for (int i = 0; i < count; i++) {
+            decoded[i] = baseOffset + buffer.getInt();
+        }
+        return decoded;
+    }
+
+    public double[] decodeValues() {
+        double[] decoded = new double[count];
+        ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(decoded);
+        return decoded;
+    }
+}
@@ -0,0 +1,21 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Statistics of one sample series, computed once at ingest and stored on the
+ * activity. Offsets are milliseconds since the activity's startTime.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricSummary {
+    private int count;
+    private double min;
+    private double max;
+    private double avg;
+    private long firstOffset;
+    private long lastOffset;
+}
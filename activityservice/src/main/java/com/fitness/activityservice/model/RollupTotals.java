@@ -0,0 +1,20 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupTotals {
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+
+    public void add(Activity activity) {
+        count++;
+        totalDuration += activity.getDuration() == null ? 0 : activity.getDuration();
+        totalCalories += activity.getCaloriesBurned() == null ? 0 : activity.getCaloriesBurned();
+    }
+}
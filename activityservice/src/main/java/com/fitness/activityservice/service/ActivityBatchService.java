@@ -0,0 +1,282 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.activityservice.dto.ActivityBatchItemResult;
+import com.fitness.activityservice.dto.ActivityBatchItemResult.Status;
+import com.fitness.activityservice.dto.ActivityBatchResponse;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.MetricSeriesRequest;
+import com.fitness.activityservice.model.Activity;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteInsert;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Ingests many activities for one user in a single request. The body, either
+ * a JSON array or NDJSON, is read one item at a time; every activity.batch.chunk-size
+ * valid items have their sample series stored, then are stored with one
+ * unordered bulk insert and published with publisher confirms before the next
+ * chunk is read, so memory use is bounded by the chunk size rather than the
+ * upload size. A rejected document fails only its own item; the rest of the
+ * chunk is still published and rolled up. In outbox mode chunks are only
+ * stored and {@link ActivityOutboxRelay} publishes them.
+ */
+@Service
+@Slf4j
+public class ActivityBatchService {
+    private final MongoTemplate mongoTemplate;
+    private final UserValidationService userValidationService;
+    private final RabbitTemplate rabbitTemplate;
+    private final ActivityOutboxRelay activityOutboxRelay;
+    private final ActivityRollupService activityRollupService;
+    private final MetricSeriesService metricSeriesService;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary batchSizes;
+    private final int chunkSize;
+    private final int maxItems;
+    private final Duration confirmTimeout;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.Key}")
+    private String routeKey;
+
+    public ActivityBatchService(MongoTemplate mongoTemplate,
+                                UserValidationService userValidationService,
+                                RabbitTemplate rabbitTemplate,
+                                ActivityOutboxRelay activityOutboxRelay,
+                                ActivityRollupService activityRollupService,
+                                MetricSeriesService metricSeriesService,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${activity.batch.chunk-size:50}") int chunkSize,
+                                @Value("${activity.batch.max-items:200}") int maxItems,
+                                @Value("${activity.batch.confirm-timeout:10s}") Duration confirmTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.userValidationService = userValidationService;
+        this.rabbitTemplate = rabbitTemplate;
+        this.activityOutboxRelay = activityOutboxRelay;
+        this.activityRollupService = activityRollupService;
+        this.metricSeriesService = metricSeriesService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxItems = maxItems;
+        this.confirmTimeout = confirmTimeout;
+        this.batchSizes = DistributionSummary.builder("activity.batch.size")
+                .description("Activities received per batch request")
+                .register(meterRegistry);
+    }
+
+    public ActivityBatchResponse trackActivities(String userId, InputStream body) throws IOException {
+        if (!userValidationService.validateUser(userId)) {
+            throw new RuntimeException("Invalid User: " + userId);
+        }
+        ActivityBatchResponse response = new ActivityBatchResponse();
+        List<Activity> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        List<Map<String, MetricSeriesRequest>> chunkSeries = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        try (MappingIterator<ActivityRequest> requests = objectMapper.readerFor(ActivityRequest.class).readValues(body)) {
+            while (true) {
+                ActivityRequest request;
+                try {
+                    if (!requests.hasNextValue()) {
+                        break;
+                    }
+                    request = requests.nextValue();
+                } catch (JsonParseException e) {
+                    response.add(new ActivityBatchItemResult(index, null, Status.REJECTED,
+                            "Malformed JSON, remaining input ignored: " + e.getOriginalMessage()));
+                    break;
+                } catch (JsonMappingException e) {
+                    response.add(new ActivityBatchItemResult(index++, null, Status.REJECTED, e.getOriginalMessage()));
+                    continue;
+                }
+
+                if (index >= maxItems) {
+                    response.add(new ActivityBatchItemResult(index, null, Status.REJECTED,
+                            "Batch limit of " + maxItems + " activities reached, remaining input ignored"));
+                    break;
+                }
+                String problem = validate(request);
+                if (problem != null) {
+                    response.add(new ActivityBatchItemResult(index++, null, Status.REJECTED, problem));
+                    continue;
+                }
+                chunk.add(toActivity(userId, request, activityOutboxRelay.isEnabled()));
+                chunkIndexes.add(index++);
+                chunkSeries.add(request.getSeries());
+                if (chunk.size() == chunkSize) {
+                    storeAndPublish(chunk, chunkIndexes, chunkSeries, response);
+                    chunk.clear();
+                    chunkIndexes.clear();
+                    chunkSeries.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                storeAndPublish(chunk, chunkIndexes, chunkSeries, response);
+            }
+        } finally {
+            batchSizes.record(response.getReceived());
+        }
+        response.getItems().sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return response;
+    }
+
+    private void storeAndPublish(List<Activity> chunk, List<Integer> indexes,
+                                 List<Map<String, MetricSeriesRequest>> series, ActivityBatchResponse response) {
+        // series go first so no stored activity carries summaries of chunks that are missing
+        List<Activity> storable = new ArrayList<>(chunk.size());
+        List<Integer> storableIndexes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                metricSeriesService.storeFor(chunk.get(i), series.get(i));
+                storable.add(chunk.get(i));
+                storableIndexes.add(indexes.get(i));
+            } catch (Exception e) {
+                response.add(new ActivityBatchItemResult(indexes.get(i), null, Status.FAILED, "Unable to store sample series"));
+            }
+        }
+        if (storable.isEmpty()) {
+            return;
+        }
+        Set<Integer> failures = insertUnordered(storable);
+        List<Activity> saved = new ArrayList<>(storable.size());
+        List<Integer> savedIndexes = new ArrayList<>(storable.size());
+        for (int i = 0; i < storable.size(); i++) {
+            if (!failures.contains(i)) {
+                saved.add(storable.get(i));
+                savedIndexes.add(storableIndexes.get(i));
+            } else {
+                metricSeriesService.discard(storable.get(i));
+                response.add(new ActivityBatchItemResult(storableIndexes.get(i), null, Status.FAILED, "Unable to store activity"));
+            }
+        }
+        if (saved.isEmpty()) {
+            return;
+        }
+        activityRollupService.record(saved);
+        if (activityOutboxRelay.isEnabled()) {
+            for (int i = 0; i < saved.size(); i++) {
+                response.add(new ActivityBatchItemResult(savedIndexes.get(i), saved.get(i).getId(), Status.CREATED, null));
+            }
+            return;
+        }
+
+        List<CorrelationData> confirms = new ArrayList<>(saved.size());
+        for (Activity activity : saved) {
+            CorrelationData correlation = new CorrelationData(activity.getId());
+            confirms.add(correlation);
+            try {
+                rabbitTemplate.convertAndSend(exchange, routeKey, activity, correlation);
+            } catch (Exception e) {
+                log.error("Failed to publish activity {} to RabbitMQ", activity.getId(), e);
+                correlation.getFuture().completeExceptionally(e);
+            }
+        }
+
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+        for (int i = 0; i < saved.size(); i++) {
+            String id = saved.get(i).getId();
+            String error = awaitConfirm(confirms.get(i), deadline);
+            response.add(error == null
+                    ? new ActivityBatchItemResult(savedIndexes.get(i), id, Status.CREATED, null)
+                    : new ActivityBatchItemResult(savedIndexes.get(i), id, Status.STORED_NOT_PUBLISHED, error));
+        }
+    }
+
+    /**
+     * Inserts the chunk with one unordered bulk write, so a rejected document
+     * does not stop the ones after it. Stored activities get the id generated
+     * for them; the positions of the others are returned.
+     */
+    private Set<Integer> insertUnordered(List<Activity> activities) {
+        BulkWriteResult result;
+        List<BulkWriteError> errors;
+        try {
+            result = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class)
+                    .insert(activities)
+                    .execute();
+            errors = List.of();
+        } catch (BulkOperationException e) {
+            log.error("Failed to store {} of a chunk of {} activities", e.getErrors().size(), activities.size(), e);
+            result = e.getResult();
+            errors = e.getErrors();
+        } catch (Exception e) {
+            log.error("Failed to store a chunk of {} activities", activities.size(), e);
+            return IntStream.range(0, activities.size()).boxed().collect(Collectors.toSet());
+        }
+        for (BulkWriteInsert insert : result.getInserts()) {
+            activities.get(insert.getIndex()).setId(insert.getId().asObjectId().getValue().toHexString());
+        }
+        return errors.stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+    }
+
+    private static String awaitConfirm(CorrelationData correlation, long deadline) {
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return confirm.isAck() ? null : "Broker rejected the publish: " + confirm.getReason();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted while waiting for the broker";
+        } catch (Exception e) {
+            return "Broker did not confirm the publish";
+        }
+    }
+
+    private String validate(ActivityRequest request) {
+        if (request == null) {
+            return "Empty activity";
+        }
+        if (request.getType() == null) {
+            return "Activity type is required";
+        }
+        if (request.getDuration() == null || request.getDuration() < 0) {
+            return "Duration must be a non-negative number of minutes";
+        }
+        if (request.getCaloriesBurned() != null && request.getCaloriesBurned() < 0) {
+            return "Calories burned must not be negative";
+        }
+        return metricSeriesService.validate(request.getSeries());
+    }
+
+    private Activity toActivity(String userId, ActivityRequest request, boolean outboxPending) {
+        return Activity.builder()
+                .userId(userId)
+                .type(request.getType())
+                .duration(request.getDuration())
+                .caloriesBurned(request.getCaloriesBurned())
+                .startTime(request.getStartTime())
+                .additionalMetrics(request.getAdditionalMetrics())
+                .seriesSummaries(metricSeriesService.summarize(request.getSeries()))
+                .outboxPending(outboxPending ? Boolean.TRUE : null)
+                .build();
+    }
+}
@@ -0,0 +1,237 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox relay for activity events. With activity.outbox.enabled the HTTP path
+ * only stores the activity flagged outboxPending; this relay publishes pending
+ * activities in createdAt order, activity.outbox.batch-size at a time, waits
+ * for publisher confirms and clears the flag of every confirmed one. Anything
+ * not confirmed stays pending and is retried on the next poll, so events
+ * survive broker outages and restarts. Delivery is at-least-once; aiservice
+ * upserts recommendations by activityId, so a repeated event is harmless.
+ * <p>
+ * Every instance runs the relay, so a batch is claimed before it is
+ * published: one conditional update stamps relayOwner and lockedUntil on
+ * pending activities whose lease is absent or expired, and only the rows
+ * carrying this batch's owner token are published. Unconfirmed rows have
+ * their lease cleared straight away; a relay that dies mid-batch leaves
+ * rows that become claimable again once activity.outbox.lease has passed.
+ */
+@Service
+@Slf4j
+public class ActivityOutboxRelay {
+    static final String PENDING = "outboxPending";
+    static final String OWNER = "relayOwner";
+    static final String LOCKED_UNTIL = "lockedUntil";
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration confirmTimeout;
+    private final Duration lease;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final DistributionSummary batchSizes;
+    private final Timer relayLag;
+    private final Counter unconfirmed;
+    private final AtomicLong oldestPendingSeconds = new AtomicLong();
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.Key}")
+    private String routeKey;
+
+    public ActivityOutboxRelay(MongoTemplate mongoTemplate,
+                               RabbitTemplate rabbitTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${activity.outbox.enabled:false}") boolean enabled,
+                               @Value("${activity.outbox.batch-size:200}") int batchSize,
+                               @Value("${activity.outbox.confirm-timeout:10s}") Duration confirmTimeout,
+                               @Value("${activity.outbox.lease:30s}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.confirmTimeout = confirmTimeout;
+        // a lease shorter than the confirm wait would let another instance re-publish a batch in flight
+        this.lease = lease.compareTo(confirmTimeout.multipliedBy(2)) < 0 ? confirmTimeout.multipliedBy(2) : lease;
+        this.batchSizes = DistributionSummary.builder("activity.outbox.batch.size")
+                .description("Activity events published per relay batch")
+                .register(meterRegistry);
+        this.relayLag = Timer.builder("activity.outbox.lag")
+                .description("Time from storing an activity to the broker confirming its event")
+                .register(meterRegistry);
+        this.unconfirmed = Counter.builder("activity.outbox.unconfirmed")
+                .description("Relay publishes that were not confirmed and will be retried")
+                .register(meterRegistry);
+        Gauge.builder("activity.outbox.oldest_pending", oldestPendingSeconds, AtomicLong::get)
+                .description("Age of the oldest unpublished activity event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensurePendingIndex() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            mongoTemplate.indexOps(Activity.class).createIndex(new Index()
+                    .on(PENDING, Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.ASC)
+                    .partial(PartialIndexFilter.of(Criteria.where(PENDING).exists(true))));
+        } catch (Exception e) {
+            log.warn("Unable to create outbox index on activities: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${activity.outbox.poll-interval:200ms}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        List<Activity> claimed;
+        int published;
+        do {
+            String owner = instanceId + ":" + UUID.randomUUID();
+            claimed = claim(owner);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            try {
+                published = publish(claimed);
+            } finally {
+                releaseLease(owner);
+            }
+        } while (published == claimed.size() && claimed.size() == batchSize);
+    }
+
+    /**
+     * Picks the oldest unclaimed pending activities and stamps them with
+     * {@code owner} in one update. The update repeats the lease condition, so
+     * a row another instance claimed in between is skipped rather than stolen,
+     * and only what this update actually stamped is returned.
+     */
+    private List<Activity> claim(String owner) {
+        LocalDateTime now = LocalDateTime.now();
+        Query candidates = Query.query(claimable(now))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        candidates.fields().include("id", "createdAt");
+        List<Activity> oldest = mongoTemplate.find(candidates, Activity.class);
+        updateOldestPending(oldest);
+        if (oldest.isEmpty()) {
+            return List.of();
+        }
+        List<String> ids = oldest.stream().map(Activity::getId).toList();
+        mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(Criteria.where("id").in(ids), claimable(now))),
+                new Update().set(OWNER, owner).set(LOCKED_UNTIL, now.plus(lease)), Activity.class);
+        return mongoTemplate.find(Query.query(Criteria.where(OWNER).is(owner))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt")), Activity.class);
+    }
+
+    private static Criteria claimable(LocalDateTime now) {
+        return new Criteria().andOperator(
+                Criteria.where(PENDING).is(true),
+                new Criteria().orOperator(Criteria.where(LOCKED_UNTIL).exists(false), Criteria.where(LOCKED_UNTIL).lt(now)));
+    }
+
+    private void releaseLease(String owner) {
+        try {
+            mongoTemplate.updateMulti(Query.query(Criteria.where(OWNER).is(owner)),
+                    new Update().unset(OWNER).unset(LOCKED_UNTIL), Activity.class);
+        } catch (Exception e) {
+            log.warn("Unable to release outbox lease {}, rows become claimable after {}: {}", owner, lease, e.getMessage());
+        }
+    }
+
+    private int publish(List<Activity> pending) {
+        batchSizes.record(pending.size());
+        List<CorrelationData> confirms = new ArrayList<>(pending.size());
+        for (Activity activity : pending) {
+            CorrelationData correlation = new CorrelationData(activity.getId());
+            try {
+                rabbitTemplate.convertAndSend(exchange, routeKey, activity, correlation);
+            } catch (Exception e) {
+                log.warn("Outbox relay cannot reach RabbitMQ, {} events stay pending: {}", pending.size(), e.getMessage());
+                correlation.getFuture().completeExceptionally(e);
+            }
+            confirms.add(correlation);
+            if (correlation.getFuture().isCompletedExceptionally()) {
+                break;
+            }
+        }
+
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+        List<String> delivered = new ArrayList<>(confirms.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < confirms.size(); i++) {
+            if (confirmed(confirms.get(i), deadline)) {
+                Activity activity = pending.get(i);
+                delivered.add(activity.getId());
+                if (activity.getCreatedAt() != null) {
+                    relayLag.record(Duration.between(activity.getCreatedAt(), now));
+                }
+            } else {
+                unconfirmed.increment();
+            }
+        }
+        if (!delivered.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(delivered)),
+                    new Update().unset(PENDING).unset(OWNER).unset(LOCKED_UNTIL).set("publishedAt", now), Activity.class);
+        }
+        return delivered.size();
+    }
+
+    private void updateOldestPending(List<Activity> pending) {
+        LocalDateTime oldest = pending.isEmpty() ? null : pending.get(0).getCreatedAt();
+        oldestPendingSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+    }
+
+    private static boolean confirmed(CorrelationData correlation, long deadline) {
+        try {
+            return correlation.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    .isAck();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
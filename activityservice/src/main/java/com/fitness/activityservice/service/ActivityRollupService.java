@@ -0,0 +1,259 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityStats;
+import com.fitness.activityservice.dto.ActivitySummaryResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupPeriod;
+import com.fitness.activityservice.model.RollupTotals;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Keeps per-user daily, weekly and monthly totals in activity_rollups as
+ * activities are stored, so summaries are read in O(buckets). Activities are
+ * bucketed by startTime, falling back to createdAt.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ActivityRollupService {
+    private static final int REBUILD_FLUSH_SIZE = 1000;
+    private static final String STAGING_COLLECTION = "activity_rollups_rebuild";
+
+    private final MongoTemplate mongoTemplate;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureRollupIndex() {
+        try {
+            createIndex(rollupCollection());
+        } catch (Exception e) {
+            log.warn("Unable to create index on activity_rollups: {}", e.getMessage());
+        }
+    }
+
+    private void createIndex(String collection) {
+        mongoTemplate.indexOps(collection).createIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("period", Sort.Direction.ASC)
+                .on("bucketStart", Sort.Direction.ASC));
+    }
+
+    /**
+     * Adds stored activities to their buckets with one bulk upsert per call.
+     * Failures are logged rather than thrown: the activity is already stored
+     * and {@link #rebuild(String)} restores consistent totals.
+     */
+    public void record(Collection<Activity> activities) {
+        if (activities.isEmpty()) {
+            return;
+        }
+        try {
+            increment(aggregate(activities), rollupCollection());
+        } catch (Exception e) {
+            log.error("Failed to update rollups for {} activities", activities.size(), e);
+        }
+    }
+
+    public List<ActivitySummaryResponse> getSummary(String userId, RollupPeriod period, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("userId").is(userId).and("period").is(period);
+        if (from != null || to != null) {
+            criteria = criteria.and("bucketStart");
+            if (from != null) {
+                criteria = criteria.gte(period.bucketStart(from));
+            }
+            if (to != null) {
+                criteria = criteria.lte(to);
+            }
+        }
+        List<ActivityRollup> rollups = mongoTemplate.find(Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "bucketStart")), ActivityRollup.class);
+        List<ActivitySummaryResponse> summaries = new ArrayList<>(rollups.size());
+        for (ActivityRollup rollup : rollups) {
+            ActivitySummaryResponse summary = new ActivitySummaryResponse();
+            summary.setPeriod(rollup.getPeriod());
+            summary.setBucketStart(rollup.getBucketStart());
+            summary.setTotal(ActivityStats.of(rollup.getTotal()));
+            Map<ActivityType, ActivityStats> byType = new EnumMap<>(ActivityType.class);
+            if (rollup.getTypes() != null) {
+                rollup.getTypes().forEach((type, totals) -> byType.put(ActivityType.valueOf(type), ActivityStats.of(totals)));
+            }
+            summary.setByType(byType);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    /**
+     * Recomputes rollups from the activities collection, for one user or for
+     * everybody when userId is null. Totals are built in a staging collection
+     * and swapped in once complete, so summaries keep serving the old totals
+     * meanwhile. Activities stored while a rebuild runs may be missed or
+     * counted twice; run it while ingestion is quiet.
+     */
+    public boolean startRebuild(String userId) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("activity-rollup-rebuild").start(() -> {
+            try {
+                rebuild(userId);
+            } catch (Exception e) {
+                log.error("Activity rollup rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    void rebuild(String userId) {
+        log.info("Rebuilding activity rollups for {}", userId == null ? "all users" : userId);
+        mongoTemplate.dropCollection(STAGING_COLLECTION);
+        Query activities = Query.query(userId == null ? new Criteria() : Criteria.where("userId").is(userId));
+        activities.fields().include("userId", "type", "duration", "caloriesBurned", "startTime", "createdAt");
+        long processed = 0;
+        List<Activity> pending = new ArrayList<>(REBUILD_FLUSH_SIZE);
+        try (Stream<Activity> stream = mongoTemplate.stream(activities, Activity.class)) {
+            for (Activity activity : (Iterable<Activity>) stream::iterator) {
+                pending.add(activity);
+                if (pending.size() == REBUILD_FLUSH_SIZE) {
+                    increment(aggregate(pending), STAGING_COLLECTION);
+                    processed += pending.size();
+                    pending.clear();
+                }
+            }
+        }
+        increment(aggregate(pending), STAGING_COLLECTION);
+        processed += pending.size();
+
+        if (userId == null) {
+            swapAll();
+        } else {
+            swapUser(userId);
+        }
+        log.info("Activity rollup rebuild finished, {} activities processed", processed);
+    }
+
+    /**
+     * Renames the staging collection over activity_rollups; MongoDB drops the
+     * old collection as part of the rename.
+     */
+    private void swapAll() {
+        createIndex(STAGING_COLLECTION);
+        mongoTemplate.getCollection(STAGING_COLLECTION).renameCollection(
+                new MongoNamespace(mongoTemplate.getDb().getName(), rollupCollection()),
+                new RenameCollectionOptions().dropTarget(true));
+    }
+
+    /**
+     * Replaces the user's buckets one at a time with the staged ones, then
+     * removes the buckets the rebuild no longer produced.
+     */
+    private void swapUser(String userId) {
+        Query staged = Query.query(Criteria.where("userId").is(userId));
+        List<String> ids = new ArrayList<>();
+        List<ActivityRollup> pending = new ArrayList<>(REBUILD_FLUSH_SIZE);
+        try (Stream<ActivityRollup> stream = mongoTemplate.stream(staged, ActivityRollup.class, STAGING_COLLECTION)) {
+            for (ActivityRollup rollup : (Iterable<ActivityRollup>) stream::iterator) {
+                ids.add(rollup.getId());
+                pending.add(rollup);
+                if (pending.size() == REBUILD_FLUSH_SIZE) {
+                    replace(pending);
+                    pending.clear();
+                }
+            }
+        }
+        replace(pending);
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("userId").is(userId).and("id").nin(ids)),
+                ActivityRollup.class).getDeletedCount();
+        log.info("Replaced {} activity rollup buckets for {}, removed {} stale ones", ids.size(), userId, removed);
+        mongoTemplate.dropCollection(STAGING_COLLECTION);
+    }
+
+    private void replace(List<ActivityRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        for (ActivityRollup rollup : rollups) {
+            operations.replaceOne(Query.query(Criteria.where("id").is(rollup.getId())), rollup,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        operations.execute();
+    }
+
+    private String rollupCollection() {
+        return mongoTemplate.getCollectionName(ActivityRollup.class);
+    }
+
+    private Map<String, Bucket> aggregate(Collection<Activity> activities) {
+        Map<String, Bucket> buckets = new HashMap<>();
+        for (Activity activity : activities) {
+            LocalDateTime when = activity.getStartTime() != null ? activity.getStartTime()
+                    : activity.getCreatedAt() != null ? activity.getCreatedAt() : LocalDateTime.now();
+            String type = (activity.getType() == null ? ActivityType.Other : activity.getType()).name();
+            for (RollupPeriod period : RollupPeriod.values()) {
+                LocalDate bucketStart = period.bucketStart(when.toLocalDate());
+                Bucket bucket = buckets.computeIfAbsent(ActivityRollup.idOf(activity.getUserId(), period, bucketStart),
+                        id -> new Bucket(activity.getUserId(), period, bucketStart, new RollupTotals(), new HashMap<>()));
+                bucket.total().add(activity);
+                bucket.types().computeIfAbsent(type, key -> new RollupTotals()).add(activity);
+            }
+        }
+        return buckets;
+    }
+
+    private void increment(Map<String, Bucket> buckets, String collection) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class, collection);
+        buckets.forEach((id, bucket) -> {
+            Update update = new Update()
+                    .setOnInsert("userId", bucket.userId())
+                    .setOnInsert("period", bucket.period())
+                    .setOnInsert("bucketStart", bucket.bucketStart());
+            inc(update, "total", bucket.total());
+            bucket.types().forEach((type, totals) -> inc(update, "types." + type, totals));
+            operations.upsert(Query.query(Criteria.where("id").is(id)), update);
+        });
+        operations.execute();
+    }
+
+    private static void inc(Update update, String prefix, RollupTotals totals) {
+        update.inc(prefix + ".count", totals.getCount())
+                .inc(prefix + ".totalDuration", totals.getTotalDuration())
+                .inc(prefix + ".totalCalories", totals.getTotalCalories());
+    }
+
+    private record Bucket(String userId, RollupPeriod period, LocalDate bucketStart,
+                          RollupTotals total, Map<String, RollupTotals> types) {
+    }
+}
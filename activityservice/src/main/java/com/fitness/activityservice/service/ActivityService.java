@@ -1,26 +1,53 @@
 package com.fitness.activityservice.service;
 
 import com.fitness.activityservice.ActivityRepository;
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
 import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ActivityService {
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final ActivityRepository activityRepository;
     private final UserValidationService userValidationService;
     private final RabbitTemplate rabbitTemplate;
+    private final ActivityOutboxRelay activityOutboxRelay;
+    private final ActivityRollupService activityRollupService;
+    private final MetricSeriesService metricSeriesService;
+    private final MongoTemplate mongoTemplate;
+    private final IdempotencyKeyFilter idempotencyKeyFilter;
+    private final MeterRegistry meterRegistry;
 
     @Value("${rabbitmq.exchange.name}")
     private String exchange;
@@ -28,11 +55,55 @@ public class ActivityService {
     @Value("${rabbitmq.routing.Key}")
     private String routeKey;
 
-    public ActivityResponse trackActivity(ActivityRequest request) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureListingIndex() {
+        try {
+            mongoTemplate.indexOps(Activity.class).createIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("startTime", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC));
+        } catch (Exception e) {
+            log.warn("Unable to create (userId, startTime) index on activities: {}", e.getMessage());
+        }
+        try {
+            mongoTemplate.indexOps(Activity.class).createIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("idempotencyKey", Sort.Direction.ASC)
+                    .unique()
+                    .partial(PartialIndexFilter.of(Criteria.where("idempotencyKey").exists(true))));
+        } catch (Exception e) {
+            log.warn("Unable to create unique (userId, idempotencyKey) index on activities: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stores and publishes one activity. With an idempotency key, a retry of a
+     * request that was already stored returns the original activity without
+     * storing or publishing again. Keys this instance has not seen skip the
+     * lookup; the unique (userId, idempotencyKey) index catches the rest.
+     */
+    public ActivityResponse trackActivity(ActivityRequest request, String idempotencyKey) {
         Boolean isValidUser = userValidationService.validateUser(request.getUserId());
         if (!isValidUser){
             throw new RuntimeException("Invalid User: " + request.getUserId());
         }
+        String seriesProblem = metricSeriesService.validate(request.getSeries());
+        if (seriesProblem != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, seriesProblem);
+        }
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+            }
+            if (idempotencyKeyFilter.mightContain(request.getUserId(), idempotencyKey)) {
+                Activity original = findByIdempotencyKey(request.getUserId(), idempotencyKey);
+                meterRegistry.counter("activity.idempotency.lookups", "outcome", original != null ? "replayed" : "false_positive").increment();
+                if (original != null) {
+                    return mapToResponse(original);
+                }
+            }
+        }
         Activity activity = Activity.builder()
                 .userId(request.getUserId())
                 .type(request.getType())
@@ -40,8 +111,34 @@ public class ActivityService {
                 .caloriesBurned(request.getCaloriesBurned())
                 .startTime(request.getStartTime())
                 .additionalMetrics(request.getAdditionalMetrics())
+                .seriesSummaries(metricSeriesService.summarize(request.getSeries()))
+                .outboxPending(activityOutboxRelay.isEnabled() ? Boolean.TRUE : null)
+                .idempotencyKey(idempotencyKey)
                 .build();
-        Activity savedActivity = activityRepository.save(activity);
+        metricSeriesService.storeFor(activity, request.getSeries());
+        Activity savedActivity;
+        try {
+            savedActivity = activityRepository.insert(activity);
+        } catch (DuplicateKeyException e) {
+            metricSeriesService.discard(activity);
+            Activity original = idempotencyKey == null ? null : findByIdempotencyKey(request.getUserId(), idempotencyKey);
+            if (original == null) {
+                throw e;
+            }
+            idempotencyKeyFilter.add(request.getUserId(), idempotencyKey);
+            meterRegistry.counter("activity.idempotency.lookups", "outcome", "replayed_by_index").increment();
+            return mapToResponse(original);
+        } catch (RuntimeException e) {
+            metricSeriesService.discard(activity);
+            throw e;
+        }
+        if (idempotencyKey != null) {
+            idempotencyKeyFilter.add(request.getUserId(), idempotencyKey);
+        }
+        activityRollupService.record(List.of(savedActivity));
+        if (activityOutboxRelay.isEnabled()) {
+            return mapToResponse(savedActivity);
+        }
 
         //Publish to RabbitMQ for AI Processing
         try {
@@ -52,6 +149,11 @@ public class ActivityService {
         return mapToResponse(savedActivity);
     }
 
+    private Activity findByIdempotencyKey(String userId, String idempotencyKey) {
+        return mongoTemplate.findOne(Query.query(Criteria.where("userId").is(userId)
+                .and("idempotencyKey").is(idempotencyKey)), Activity.class);
+    }
+
     private ActivityResponse mapToResponse(Activity activity) {
         ActivityResponse response = new ActivityResponse();
         response.setId(activity.getId());
@@ -61,17 +163,72 @@ public class ActivityService {
         response.setCaloriesBurned(activity.getCaloriesBurned());
         response.setStartTime(activity.getStartTime());
         response.setAdditionalMetrics(activity.getAdditionalMetrics());
+        response.setSeriesSummaries(activity.getSeriesSummaries());
         response.setCreatedAt(activity.getCreatedAt());
         response.setUpdatedAt(activity.getUpdatedAt());
         return response;
     }
 
 
-    public List<ActivityResponse> getUserActivities(String userId) {
-        List<Activity> activities = activityRepository.findByuserId(userId);
-        return activities.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    /**
+     * One page of a user's activities, newest startTime first, without the
+     * metrics map. The cursor holds the (startTime, id) of the previous page's
+     * last item, so every page is a range scan of the (userId, startTime, _id)
+     * index. Activities without a startTime come last.
+     */
+    public ActivityPage getUserActivities(String userId, String cursor, int limit,
+                                          LocalDateTime from, LocalDateTime to, ActivityType type) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        List<Criteria> filters = new ArrayList<>();
+        filters.add(Criteria.where("userId").is(userId));
+        if (from != null) {
+            filters.add(Criteria.where("startTime").gte(from));
+        }
+        if (to != null) {
+            filters.add(Criteria.where("startTime").lt(to));
+        }
+        if (type != null) {
+            filters.add(Criteria.where("type").is(type));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            filters.add(after(cursor));
+        }
+        Query query = Query.query(new Criteria().andOperator(filters))
+                .with(Sort.by(Sort.Direction.DESC, "startTime").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(pageSize + 1);
+        query.fields().exclude("metrics");
+
+        List<Activity> activities = mongoTemplate.find(query, Activity.class);
+        String nextCursor = null;
+        if (activities.size() > pageSize) {
+            activities = activities.subList(0, pageSize);
+            Activity last = activities.get(pageSize - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    ((last.getStartTime() == null ? "" : last.getStartTime().toString()) + "|" + last.getId())
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+        return new ActivityPage(activities.stream().map(this::mapToResponse).toList(), nextCursor);
+    }
+
+    private static Criteria after(String cursor) {
+        String[] position;
+        LocalDateTime startTime;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            startTime = position.length == 2 && !position[0].isEmpty() ? LocalDateTime.parse(position[0]) : null;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+        if (position.length != 2) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+        if (startTime == null) {
+            return Criteria.where("startTime").is(null).and("id").lt(position[1]);
+        }
+        return new Criteria().orOperator(
+                Criteria.where("startTime").lt(startTime),
+                Criteria.where("startTime").is(startTime).and("id").lt(position[1]),
+                Criteria.where("startTime").is(null));
     }
 
     public ActivityResponse getActivityById(String activityId) {
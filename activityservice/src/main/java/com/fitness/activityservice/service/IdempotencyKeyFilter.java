@@ -0,0 +1,92 @@
+package com.fitness.activityservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory Bloom filter over the idempotency keys this instance has stored,
+ * so a request with a fresh key, the common case, is inserted without first
+ * looking for an earlier activity. It only answers "maybe seen" or "not seen
+ * here"; keys stored by another instance or before a restart are caught by
+ * the unique index instead. Two generations are kept and the older one is
+ * dropped every activity.idempotency.filter-rotation, which bounds the false
+ * positive rate without unbounded growth.
+ */
+@Component
+public class IdempotencyKeyFilter {
+    private final int bits;
+    private final int hashes;
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+
+    public IdempotencyKeyFilter(@Value("${activity.idempotency.expected-keys:1000000}") int expectedKeys,
+                                @Value("${activity.idempotency.false-positive-rate:0.01}") double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63,
+                Math.ceil(-Math.max(1, expectedKeys) * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / Math.max(1, expectedKeys) * ln2));
+        this.current = new AtomicLongArray(Math.ceilDiv(bits, 64));
+        this.previous = new AtomicLongArray(Math.ceilDiv(bits, 64));
+    }
+
+    public boolean mightContain(String userId, String key) {
+        long hash = hash(userId, key);
+        return contains(current, hash) || contains(previous, hash);
+    }
+
+    public void add(String userId, String key) {
+        long hash = hash(userId, key);
+        AtomicLongArray words = current;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(bit >>> 6);
+            } while ((word & mask) == 0 && !words.compareAndSet(bit >>> 6, word, word | mask));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${activity.idempotency.filter-rotation:24h}",
+            initialDelayString = "${activity.idempotency.filter-rotation:24h}")
+    public void rotate() {
+        previous = current;
+        current = new AtomicLongArray(previous.length());
+    }
+
+    private boolean contains(AtomicLongArray words, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a over userId and key with a final avalanche, split into the
+     * two halves used for double hashing.
+     */
+    private static long hash(String userId, String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (userId + '\u0000' + key).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fd51b2c2bL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
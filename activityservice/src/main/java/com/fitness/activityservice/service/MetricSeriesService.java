@@ -0,0 +1,289 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.MetricSeriesRequest;
+import com.fitness.activityservice.dto.MetricSeriesResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.MetricSeriesChunk;
+import com.fitness.activityservice.model.MetricSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Stores high-frequency metric samples outside the activity document, in
+ * activity_series chunks of activity.series.chunk-size samples, and serves
+ * them downsampled to min/max/avg per window. Summaries are computed at ingest
+ * and kept on the activity, so listings and the activity event never carry
+ * raw samples.
+ */
+@Service
+@Slf4j
+public class MetricSeriesService {
+    private static final int MAX_POINTS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final int chunkSize;
+    private final int maxSamples;
+
+    public MetricSeriesService(MongoTemplate mongoTemplate,
+                               @Value("${activity.series.chunk-size:1024}") int chunkSize,
+                               @Value("${activity.series.max-samples:200000}") int maxSamples) {
+        this.mongoTemplate = mongoTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxSamples = maxSamples;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureSeriesIndex() {
+        try {
+            mongoTemplate.indexOps(MetricSeriesChunk.class).createIndex(new Index()
+                    .on("activityId", Sort.Direction.ASC)
+                    .on("metric", Sort.Direction.ASC)
+                    .on("seq", Sort.Direction.ASC));
+        } catch (Exception e) {
+            log.warn("Unable to create index on activity_series: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns why the series cannot be stored, or null when they are valid.
+     */
+    public String validate(Map<String, MetricSeriesRequest> series) {
+        if (series == null) {
+            return null;
+        }
+        for (Map.Entry<String, MetricSeriesRequest> entry : series.entrySet()) {
+            MetricSeriesRequest samples = entry.getValue();
+            if (samples == null || samples.getOffsets() == null || samples.getValues() == null) {
+                return "Series " + entry.getKey() + " needs offsets and values";
+            }
+            long[] offsets = samples.getOffsets();
+            if (offsets.length != samples.getValues().length) {
+                return "Series " + entry.getKey() + " has " + offsets.length + " offsets but "
+                        + samples.getValues().length + " values";
+            }
+            if (offsets.length > maxSamples) {
+                return "Series " + entry.getKey() + " exceeds " + maxSamples + " samples";
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] < 0 || (i > 0 && offsets[i] < offsets[i - 1])) {
+                    return "Series " + entry.getKey() + " offsets must be non-negative and non-decreasing";
+                }
+            }
+            if (offsets.length > 0 && offsets[offsets.length - 1] - offsets[0] > Integer.MAX_VALUE) {
+                return "Series " + entry.getKey() + " spans more than " + Duration.ofMillis(Integer.MAX_VALUE).toDays() + " days";
+            }
+        }
+        return null;
+    }
+
+    public Map<String, MetricSummary> summarize(Map<String, MetricSeriesRequest> series) {
+        if (series == null || series.isEmpty()) {
+            return null;
+        }
+        Map<String, MetricSummary> summaries = new LinkedHashMap<>();
+        series.forEach((metric, samples) -> {
+            double[] values = samples.getValues();
+            if (values.length == 0) {
+                return;
+            }
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (double value : values) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            long[] offsets = samples.getOffsets();
+            summaries.put(metric, new MetricSummary(values.length, min, max, sum / values.length,
+                    offsets[0], offsets[offsets.length - 1]));
+        });
+        return summaries.isEmpty() ? null : summaries;
+    }
+
+    /**
+     * Stores the chunks of an activity that has not been saved yet, so a saved
+     * activity's seriesSummaries never point at chunks that are missing. Chunks
+     * are keyed by the activity id, so an activity with summaries is given its
+     * id here, and its createdAt, which auditing no longer fills in once the id
+     * is set. Chunks already written are removed again if the insert fails.
+     *
+     * @throws ResponseStatusException 503 when the chunks cannot be stored
+     */
+    public void storeFor(Activity activity, Map<String, MetricSeriesRequest> series) {
+        if (activity.getSeriesSummaries() == null) {
+            return;
+        }
+        activity.setId(new ObjectId().toHexString());
+        activity.setCreatedAt(LocalDateTime.now());
+        try {
+            store(activity.getId(), series);
+        } catch (RuntimeException e) {
+            log.error("Failed to store sample series of activity {}", activity.getId(), e);
+            discard(activity);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Unable to store sample series", e);
+        }
+    }
+
+    /**
+     * Removes the chunks stored by {@link #storeFor} when the activity itself
+     * could not be saved.
+     */
+    public void discard(Activity activity) {
+        if (activity.getSeriesSummaries() == null || activity.getId() == null) {
+            return;
+        }
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("activityId").is(activity.getId())), MetricSeriesChunk.class);
+        } catch (RuntimeException e) {
+            log.warn("Unable to remove orphaned sample series of activity {}: {}", activity.getId(), e.getMessage());
+        }
+    }
+
+    void store(String activityId, Map<String, MetricSeriesRequest> series) {
+        if (series == null || series.isEmpty()) {
+            return;
+        }
+        List<MetricSeriesChunk> chunks = new ArrayList<>();
+        series.forEach((metric, samples) -> {
+            for (int from = 0, seq = 0; from < samples.getValues().length; from += chunkSize, seq++) {
+                chunks.add(chunk(activityId, metric, seq, samples, from, Math.min(samples.getValues().length, from + chunkSize)));
+            }
+        });
+        if (!chunks.isEmpty()) {
+            mongoTemplate.insert(chunks, MetricSeriesChunk.class);
+        }
+    }
+
+    private static MetricSeriesChunk chunk(String activityId, String metric, int seq,
+                                           MetricSeriesRequest samples, int from, int to) {
+        long baseOffset = samples.getOffsets()[from];
+        ByteBuffer offsets = ByteBuffer.allocate((to - from) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer values = ByteBuffer.allocate((to - from) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            double value = samples.getValues()[i];
+            offsets.putInt((int) (samples.getOffsets()[i] - baseOffset));
+            values.putDouble(value);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+        return MetricSeriesChunk.builder()
+                .id(activityId + ":" + metric + ":" + seq)
+                .activityId(activityId)
+                .metric(metric)
+                .seq(seq)
+                .count(to - from)
+                .baseOffset(baseOffset)
+                .lastOffset(samples.getOffsets()[to - 1])
+                .min(min)
+                .max(max)
+                .sum(sum)
+                .offsets(offsets.array())
+                .values(values.array())
+                .build();
+    }
+
+    /**
+     * Downsamples one series to windows of the given length, or to at most
+     * points windows when no window is given. Chunks are streamed one at a
+     * time and only decoded when they straddle a window boundary.
+     */
+    public MetricSeriesResponse downsample(String activityId, String metric, int points, Duration window) {
+        Query activityQuery = Query.query(Criteria.where("id").is(activityId));
+        activityQuery.fields().include("seriesSummaries");
+        Activity activity = mongoTemplate.findOne(activityQuery, Activity.class);
+        if (activity == null) {
+            throw new RuntimeException("Activity not found with activityId: " + activityId);
+        }
+        MetricSummary summary = activity.getSeriesSummaries() == null ? null : activity.getSeriesSummaries().get(metric);
+        if (summary == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No " + metric + " series for activity " + activityId);
+        }
+
+        long first = summary.getFirstOffset();
+        long span = summary.getLastOffset() - first + 1;
+        long windowMillis = window != null && window.toMillis() > 0
+                ? window.toMillis()
+                : Math.ceilDiv(span, Math.clamp(points, 1, MAX_POINTS));
+        windowMillis = Math.max(windowMillis, Math.ceilDiv(span, MAX_POINTS));
+        int windows = (int) Math.ceilDiv(span, windowMillis);
+
+        double[] min = new double[windows];
+        double[] max = new double[windows];
+        double[] sum = new double[windows];
+        int[] count = new int[windows];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+        Query chunkQuery = Query.query(Criteria.where("activityId").is(activityId).and("metric").is(metric))
+                .with(Sort.by(Sort.Direction.ASC, "seq"));
+        try (Stream<MetricSeriesChunk> chunks = mongoTemplate.stream(chunkQuery, MetricSeriesChunk.class)) {
+            for (MetricSeriesChunk chunk : (Iterable<MetricSeriesChunk>) chunks::iterator) {
+                int firstWindow = (int) ((chunk.getBaseOffset() - first) / windowMillis);
+                if (firstWindow == (int) ((chunk.getLastOffset() - first) / windowMillis)) {
+                    min[firstWindow] = Math.min(min[firstWindow], chunk.getMin());
+                    max[firstWindow] = Math.max(max[firstWindow], chunk.getMax());
+                    sum[firstWindow] += chunk.getSum();
+                    count[firstWindow] += chunk.getCount();
+                    continue;
+                }
+                long[] offsets = chunk.decodeOffsets();
+                double[] values = chunk.decodeValues();
+                for (int i = 0; i < offsets.length; i++) {
+                    int w = (int) ((offsets[i] - first) / windowMillis);
+                    min[w] = Math.min(min[w], values[i]);
+                    max[w] = Math.max(max[w], values[i]);
+                    sum[w] += values[i];
+                    count[w]++;
+                }
+            }
+        }
+
+        int filled = 0;
+        for (int c : count) {
+            if (c > 0) {
+                filled++;
+            }
+        }
+        MetricSeriesResponse response = new MetricSeriesResponse(activityId, metric, windowMillis,
+                new long[filled], new double[filled], new double[filled], new double[filled], new int[filled]);
+        for (int w = 0, i = 0; w < windows; w++) {
+            if (count[w] == 0) {
+                continue;
+            }
+            response.getOffsets()[i] = first + w * windowMillis;
+            response.getMin()[i] = min[w];
+            response.getMax()[i] = max[w];
+            response.getAvg()[i] = sum[w] / count[w];
+            response.getCount()[i] = count[w];
+            i++;
+        }
+        return response;
+    }
+}
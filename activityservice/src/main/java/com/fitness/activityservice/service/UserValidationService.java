@@ -1,34 +1,109 @@
 package com.fitness.activityservice.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-//import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Validates users against USER-SERVICE through a bounded local cache. Known
+ * users are cached for user.validation.positive-ttl and unknown or invalid ones
+ * for the shorter negative-ttl. Concurrent lookups for the same user share one
+ * downstream call. When USER-SERVICE cannot be reached, users that validated
+ * within user.validation.stale-ttl are still accepted.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class UserValidationService {
     private final WebClient userServiceWebClient;
+    private final AsyncCache<String, Validation> validations;
+    private final Cache<String, Boolean> recentlyValid;
+    private final Duration timeout;
+    private final Counter staleServed;
+    private final Counter unavailable;
+
+    public UserValidationService(WebClient userServiceWebClient,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${user.validation.max-entries:10000}") long maxEntries,
+                                 @Value("${user.validation.positive-ttl:5m}") Duration positiveTtl,
+                                 @Value("${user.validation.negative-ttl:30s}") Duration negativeTtl,
+                                 @Value("${user.validation.stale-ttl:24h}") Duration staleTtl,
+                                 @Value("${user.validation.timeout:2s}") Duration timeout) {
+        this.userServiceWebClient = userServiceWebClient;
+        this.timeout = timeout;
+        this.validations = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(Expiry.<String, Validation>creating((userId, validation) ->
+                        validation == Validation.VALID ? positiveTtl : negativeTtl))
+                .recordStats()
+                .buildAsync();
+        this.recentlyValid = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(staleTtl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validations, "userValidation");
+        this.staleServed = Counter.builder("user.validation.stale_served")
+                .description("Validations answered from recently known users while USER-SERVICE was unavailable")
+                .register(meterRegistry);
+        this.unavailable = Counter.builder("user.validation.unavailable")
+                .description("Validations that could not reach USER-SERVICE")
+                .register(meterRegistry);
+    }
 
     public boolean validateUser(String userId){
+        Validation validation;
         try {
-            return Boolean.TRUE.equals(userServiceWebClient.get()
-                    .uri("/api/users/{userId}/validate", userId)
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block());
-
-        }
-        catch (WebClientResponseException e){
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND){
-                throw new RuntimeException("User not found: "+ userId);
+            validation = validations.get(userId, (key, executor) -> fetch(key).toFuture()).join();
+        } catch (CompletionException e) {
+            unavailable.increment();
+            if (recentlyValid.getIfPresent(userId) != null) {
+                staleServed.increment();
+                log.warn("USER-SERVICE unavailable, accepting recently validated user {}: {}", userId, e.getCause().getMessage());
+                return true;
             }
-
+            log.error("Unable to validate user {}", userId, e.getCause());
+            return false;
+        }
+        if (validation == Validation.NOT_FOUND) {
+            throw new RuntimeException("User not found: "+ userId);
         }
-        return false;
+        return validation == Validation.VALID;
     }
 
+    private Mono<Validation> fetch(String userId) {
+        return userServiceWebClient.get()
+                .uri("/api/users/{userId}/validate", userId)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .map(valid -> valid ? Validation.VALID : Validation.INVALID)
+                .defaultIfEmpty(Validation.INVALID)
+                .onErrorResume(WebClientResponseException.class, e -> e.getStatusCode() == HttpStatus.NOT_FOUND
+                        ? Mono.just(Validation.NOT_FOUND)
+                        : Mono.error(e))
+                .timeout(timeout)
+                .doOnNext(validation -> {
+                    if (validation == Validation.VALID) {
+                        recentlyValid.put(userId, Boolean.TRUE);
+                    } else {
+                        recentlyValid.invalidate(userId);
+                    }
+                });
+    }
 
+    private enum Validation {
+        VALID, INVALID, NOT_FOUND
+    }
 }
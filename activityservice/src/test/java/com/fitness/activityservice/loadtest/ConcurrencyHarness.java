@@ -0,0 +1,105 @@
+package com.fitness.activityservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop GET load against a running service at increasing concurrency,
+ * for comparing spring.threads.virtual.enabled=false and true. Each client
+ * sends its next request as soon as the previous one returns; throughput and
+ * latency percentiles are printed per concurrency level.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.activityservice.loadtest.ConcurrencyHarness \
+ *     -Dexec.args="--url=http://localhost:8082/api/activities?limit=20 --user-id=... --levels=50,200,800,2000 --duration=20s"
+ * </pre>
+ */
+public class ConcurrencyHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        URI url = URI.create(options.getOrDefault("url", "http://localhost:8082/api/activities?limit=20"));
+        String userId = options.get("user-id");
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "20s").toUpperCase(Locale.ROOT));
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "50,200,800,2000").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest.Builder template = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(30)).GET();
+        if (userId != null) {
+            template.header("X-User-ID", userId);
+        }
+        HttpRequest request = template.build();
+
+        System.out.println("concurrency   req/s      p50      p99      max  errors");
+        for (int concurrency : levels) {
+            run(client, request, concurrency, Duration.ofSeconds(3));
+            Result result = run(client, request, concurrency, duration);
+            long[] sorted = result.latencies();
+            System.out.printf(Locale.ROOT, "%11d %7.0f %6.1fms %6.1fms %6.1fms %7d%n", concurrency,
+                    sorted.length / (duration.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0), result.errors());
+        }
+    }
+
+    private static Result run(HttpClient client, HttpRequest request, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<List<Long>> perClient = new ArrayList<>(concurrency);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                List<Long> latencies = new ArrayList<>();
+                perClient.add(latencies);
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                            latencies.add(System.nanoTime() - start);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+        long[] all = perClient.stream().flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        return new Result(all, errors.get());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.fitness.activityservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Compares ingestion throughput of POST /api/activities against
+ * POST /api/activities/batch on a running activityservice. Both runs send the
+ * same number of activities for one user; the single-item run keeps
+ * concurrency requests in flight, the batch run sends NDJSON bodies of
+ * batch-size activities with the same concurrency.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.activityservice.loadtest.IngestionThroughputHarness \
+ *     -Dexec.args="--base-url=http://localhost:8082 --user-id=... --count=5000 --concurrency=16 --batch-size=500"
+ * </pre>
+ */
+public class IngestionThroughputHarness {
+    private static final String[] TYPES = {"Running", "Walking", "Cycling", "Swimming", "Yoga", "Cardio"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8082");
+        String userId = options.get("user-id");
+        if (userId == null) {
+            throw new IllegalArgumentException("--user-id of an existing user is required");
+        }
+        int count = Integer.parseInt(options.getOrDefault("count", "5000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "500"));
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+        List<String> singleBodies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            singleBodies.add(activityJson(i));
+        }
+        Result single = run(singleBodies, concurrency, body -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/activities"))
+                .header("Content-Type", "application/json")
+                .header("X-User-ID", userId)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), client);
+
+        List<String> batchBodies = new ArrayList<>();
+        for (int from = 0; from < count; from += batchSize) {
+            StringBuilder ndjson = new StringBuilder();
+            for (int i = from; i < Math.min(count, from + batchSize); i++) {
+                ndjson.append(activityJson(i)).append('\n');
+            }
+            batchBodies.add(ndjson.toString());
+        }
+        Result batch = run(batchBodies, concurrency, body -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/activities/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .header("X-User-ID", userId)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), client);
+
+        System.out.printf(Locale.ROOT, "single  %6d activities in %6.2fs  %8.1f activities/s  (%d failed requests)%n",
+                count, single.seconds(), count / single.seconds(), single.failures());
+        System.out.printf(Locale.ROOT, "batch   %6d activities in %6.2fs  %8.1f activities/s  (%d failed requests, %d per request)%n",
+                count, batch.seconds(), count / batch.seconds(), batch.failures(), batchSize);
+        System.out.printf(Locale.ROOT, "speedup %.1fx%n", single.seconds() / batch.seconds());
+    }
+
+    private static Result run(List<String> bodies, int concurrency, Function<String, HttpRequest> request,
+                              HttpClient client) throws Exception {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> sent = new ArrayList<>(bodies.size());
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String body : bodies) {
+                inFlight.acquire();
+                sent.add(executor.submit(() -> {
+                    try {
+                        HttpResponse<String> response = client.send(request.apply(body), HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<?> future : sent) {
+                future.get();
+            }
+        }
+        return new Result((System.nanoTime() - start) / 1e9, failures.get());
+    }
+
+    private static String activityJson(int sequence) {
+        int duration = 15 + sequence % 76;
+        return String.format(Locale.ROOT,
+                "{\"type\":\"%s\",\"duration\":%d,\"caloriesBurned\":%d,\"startTime\":\"%s\",\"additionalMetrics\":{\"heartRate\":%d,\"distance\":%.2f}}",
+                TYPES[sequence % TYPES.length], duration, duration * (4 + sequence % 9),
+                LocalDateTime.now().minusMinutes(sequence).withNano(0), 110 + sequence % 60, 2 + (sequence % 1500) / 100.0);
+    }
+
+    private record Result(double seconds, int failures) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.fitness.activityservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricSeriesChunkTest {
+
+    @Test
+    void decodesLittleEndianOffsetsRelativeToBaseOffset() {
+        ByteBuffer offsets = ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0).putInt(250).putInt(Integer.MAX_VALUE);
+        MetricSeriesChunk chunk = MetricSeriesChunk.builder()
+                .count(3)
+                .baseOffset(10_000_000_000L)
+                .offsets(offsets.array())
+                .build();
+
+        assertThat(chunk.decodeOffsets())
+                .containsExactly(10_000_000_000L, 10_000_000_250L, 10_000_000_000L + Integer.MAX_VALUE);
+    }
+
+    @Test
+    void decodesLittleEndianValues() {
+        ByteBuffer values = ByteBuffer.allocate(4 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putDouble(72.5).putDouble(-0.25).putDouble(Double.MAX_VALUE).putDouble(0);
+        MetricSeriesChunk chunk = MetricSeriesChunk.builder()
+                .count(4)
+                .values(values.array())
+                .build();
+
+        assertThat(chunk.decodeValues()).containsExactly(72.5, -0.25, Double.MAX_VALUE, 0);
+    }
+
+    @Test
+    void emptyChunkDecodesToEmptyArrays() {
+        MetricSeriesChunk chunk = MetricSeriesChunk.builder()
+                .count(0)
+                .offsets(new byte[0])
+                .values(new byte[0])
+                .build();
+
+        assertThat(chunk.decodeOffsets()).isEmpty();
+        assertThat(chunk.decodeValues()).isEmpty();
+    }
+}
@@ -0,0 +1,161 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.dto.ActivityBatchItemResult;
+import com.fitness.activityservice.dto.ActivityBatchItemResult.Status;
+import com.fitness.activityservice.dto.ActivityBatchResponse;
+import com.fitness.activityservice.model.Activity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteInsert;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs batches in outbox mode against a mocked bulk write, so per-item
+ * results depend only on which inserts the bulk write reports as failed.
+ */
+class ActivityBatchServiceTest {
+    private static final String USER_ID = "u1";
+    private static final int DOCUMENT_VALIDATION_FAILURE = 121;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final UserValidationService userValidationService = mock(UserValidationService.class);
+    private final ActivityOutboxRelay outboxRelay = mock(ActivityOutboxRelay.class);
+    private final ActivityRollupService rollupService = mock(ActivityRollupService.class);
+    private final MetricSeriesService metricSeriesService = mock(MetricSeriesService.class);
+    private final List<List<Activity>> bulkWrites = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(userValidationService.validateUser(USER_ID)).thenReturn(true);
+        when(outboxRelay.isEnabled()).thenReturn(true);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            bulkWrites.add(new ArrayList<>((List<Activity>) invocation.getArgument(0)));
+            return bulkOperations;
+        });
+        when(bulkOperations.execute()).thenAnswer(invocation -> inserted(lastWrite().size(), Set.of()));
+    }
+
+    @Test
+    void rejectedDocumentFailsOnlyItsItem() throws Exception {
+        doThrow(new BulkOperationException("bulk write failed", new MongoBulkWriteException(
+                inserted(3, Set.of(1)),
+                List.of(new BulkWriteError(DOCUMENT_VALIDATION_FAILURE, "invalid", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of()))).when(bulkOperations).execute();
+
+        ActivityBatchResponse response = service(50).trackActivities(USER_ID, body(3));
+
+        assertThat(response.getItems()).extracting(ActivityBatchItemResult::getStatus)
+                .containsExactly(Status.CREATED, Status.FAILED, Status.CREATED);
+        assertThat(response.getItems().get(0).getId()).isNotNull();
+        assertThat(response.getItems().get(2).getId()).isNotNull().isNotEqualTo(response.getItems().get(0).getId());
+        assertThat(response.getItems().get(1).getId()).isNull();
+        verify(metricSeriesService).discard(lastWrite().get(1));
+        assertThat(recordedRollups()).containsExactly(lastWrite().get(0), lastWrite().get(2));
+    }
+
+    @Test
+    void failedBulkWriteFailsTheWholeChunk() throws Exception {
+        doThrow(new IllegalStateException("mongo down")).when(bulkOperations).execute();
+
+        ActivityBatchResponse response = service(50).trackActivities(USER_ID, body(2));
+
+        assertThat(response.getItems()).extracting(ActivityBatchItemResult::getStatus)
+                .containsExactly(Status.FAILED, Status.FAILED);
+        verify(metricSeriesService, times(2)).discard(any());
+        verify(rollupService, never()).record(any());
+    }
+
+    @Test
+    void itemsAreStoredOneChunkAtATime() throws Exception {
+        ActivityBatchResponse response = service(2).trackActivities(USER_ID, body(5));
+
+        assertThat(bulkWrites).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(response.getCreated()).isEqualTo(5);
+    }
+
+    @Test
+    void unreadableBodyDoesNotStoreThePendingChunk() {
+        InputStream failing = new SequenceInputStream(body(1), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThatThrownBy(() -> service(50).trackActivities(USER_ID, failing)).isInstanceOf(IOException.class);
+        verify(bulkOperations, never()).execute();
+        verify(metricSeriesService, never()).storeFor(any(), any());
+    }
+
+    private ActivityBatchService service(int chunkSize) {
+        return new ActivityBatchService(mongoTemplate, userValidationService, mock(RabbitTemplate.class), outboxRelay,
+                rollupService, metricSeriesService, JsonMapper.builder().findAndAddModules().build(),
+                new SimpleMeterRegistry(), chunkSize, 200, Duration.ofSeconds(1));
+    }
+
+    private List<Activity> lastWrite() {
+        return bulkWrites.get(bulkWrites.size() - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Activity> recordedRollups() {
+        ArgumentCaptor<Collection<Activity>> recorded = ArgumentCaptor.forClass((Class<Collection<Activity>>) (Class<?>) Collection.class);
+        verify(rollupService).record(recorded.capture());
+        return new ArrayList<>(recorded.getValue());
+    }
+
+    private static BulkWriteResult inserted(int size, Set<Integer> failed) {
+        List<BulkWriteInsert> inserts = IntStream.range(0, size)
+                .filter(index -> !failed.contains(index))
+                .mapToObj(index -> new BulkWriteInsert(index, new BsonObjectId(new ObjectId())))
+                .collect(Collectors.toList());
+        return BulkWriteResult.acknowledged(inserts.size(), 0, 0, 0, List.of(), inserts);
+    }
+
+    private static InputStream body(int items) {
+        String ndjson = IntStream.range(0, items)
+                .mapToObj(index -> "{\"type\": \"Running\", \"duration\": " + (30 + index) + "}\n")
+                .collect(Collectors.joining());
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}
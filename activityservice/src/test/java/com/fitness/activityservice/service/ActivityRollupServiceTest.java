@@ -0,0 +1,127 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupPeriod;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a rebuild never touches activity_rollups until its totals
+ * are complete in the staging collection.
+ */
+class ActivityRollupServiceTest {
+    private static final String ROLLUPS = "activity_rollups";
+    private static final String STAGING = "activity_rollups_rebuild";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations stagingWrites = mock(BulkOperations.class);
+    private final BulkOperations liveWrites = mock(BulkOperations.class);
+    private final ActivityRollupService service = new ActivityRollupService(mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(ActivityRollup.class)).thenReturn(ROLLUPS);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class, STAGING)).thenReturn(stagingWrites);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class)).thenReturn(liveWrites);
+        when(mongoTemplate.indexOps(anyString())).thenReturn(mock(IndexOperations.class));
+        when(mongoTemplate.stream(any(Query.class), eq(Activity.class)))
+                .thenAnswer(invocation -> Stream.of(activity("u1"), activity("u2")));
+    }
+
+    @Test
+    void fullRebuildIsBuiltInStagingAndRenamedOverTheRollups() {
+        @SuppressWarnings("unchecked")
+        MongoCollection<Document> staging = mock(MongoCollection.class);
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(mongoTemplate.getCollection(STAGING)).thenReturn(staging);
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(database.getName()).thenReturn("fitnessactivity");
+
+        service.rebuild(null);
+
+        InOrder order = inOrder(mongoTemplate, stagingWrites, staging);
+        order.verify(mongoTemplate).dropCollection(STAGING);
+        order.verify(stagingWrites, times(RollupPeriod.values().length * 2)).upsert(any(Query.class), any(Update.class));
+        order.verify(stagingWrites).execute();
+        order.verify(mongoTemplate).indexOps(STAGING);
+        ArgumentCaptor<MongoNamespace> target = ArgumentCaptor.forClass(MongoNamespace.class);
+        ArgumentCaptor<RenameCollectionOptions> options = ArgumentCaptor.forClass(RenameCollectionOptions.class);
+        order.verify(staging).renameCollection(target.capture(), options.capture());
+        assertThat(target.getValue().getFullName()).isEqualTo("fitnessactivity." + ROLLUPS);
+        assertThat(options.getValue().isDropTarget()).isTrue();
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(ActivityRollup.class));
+        verify(liveWrites, never()).execute();
+    }
+
+    @Test
+    void userRebuildReplacesTheUsersBucketsAndRemovesStaleOnes() {
+        List<ActivityRollup> staged = List.of(rollup("u1", RollupPeriod.DAY), rollup("u1", RollupPeriod.WEEK));
+        when(mongoTemplate.stream(any(Query.class), eq(ActivityRollup.class), eq(STAGING))).thenReturn(staged.stream());
+        when(mongoTemplate.remove(any(Query.class), eq(ActivityRollup.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        service.rebuild("u1");
+
+        InOrder order = inOrder(mongoTemplate, stagingWrites, liveWrites);
+        order.verify(stagingWrites).execute();
+        order.verify(liveWrites, times(2)).replaceOne(any(Query.class), any(ActivityRollup.class), any(FindAndReplaceOptions.class));
+        order.verify(liveWrites).execute();
+        ArgumentCaptor<Query> stale = ArgumentCaptor.forClass(Query.class);
+        order.verify(mongoTemplate).remove(stale.capture(), eq(ActivityRollup.class));
+        order.verify(mongoTemplate).dropCollection(STAGING);
+        assertThat(stale.getValue().getQueryObject().get("userId")).isEqualTo("u1");
+        assertThat(stale.getValue().getQueryObject().get("id", Document.class).getList("$nin", String.class))
+                .containsExactly(staged.get(0).getId(), staged.get(1).getId());
+    }
+
+    private static Activity activity(String userId) {
+        return Activity.builder()
+                .userId(userId)
+                .type(ActivityType.Running)
+                .duration(30)
+                .caloriesBurned(300)
+                .startTime(LocalDateTime.of(2026, 3, 4, 7, 30))
+                .build();
+    }
+
+    private static ActivityRollup rollup(String userId, RollupPeriod period) {
+        LocalDate bucketStart = period.bucketStart(LocalDate.of(2026, 3, 4));
+        return ActivityRollup.builder()
+                .id(ActivityRollup.idOf(userId, period, bucketStart))
+                .userId(userId)
+                .period(period)
+                .bucketStart(bucketStart)
+                .build();
+    }
+}
@@ -0,0 +1,189 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.MetricSeriesRequest;
+import com.fitness.activityservice.dto.MetricSeriesResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.MetricSeriesChunk;
+import com.fitness.activityservice.model.MetricSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the series through the real chunk encoding: chunks written by store
+ * are captured from the mocked MongoTemplate and streamed back to downsample.
+ */
+class MetricSeriesServiceTest {
+    private static final String ACTIVITY_ID = "a1";
+    private static final String METRIC = "heartRate";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MetricSeriesService service = new MetricSeriesService(mongoTemplate, 4, 1000);
+    private final List<MetricSeriesChunk> stored = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void captureChunks() {
+        when(mongoTemplate.insert(anyCollection(), eq(MetricSeriesChunk.class))).thenAnswer(invocation -> {
+            stored.addAll((Collection<MetricSeriesChunk>) invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(mongoTemplate.stream(any(Query.class), eq(MetricSeriesChunk.class)))
+                .thenAnswer(invocation -> stored.stream());
+    }
+
+    @Test
+    void summarizesEverySeries() {
+        Map<String, MetricSummary> summaries = service.summarize(Map.of(
+                METRIC, series(new long[]{100, 200, 300}, new double[]{120, 150, 90}),
+                "speed", series(new long[]{0}, new double[]{3.5})));
+
+        assertThat(summaries.get(METRIC)).isEqualTo(new MetricSummary(3, 90, 150, 120, 100, 300));
+        assertThat(summaries.get("speed")).isEqualTo(new MetricSummary(1, 3.5, 3.5, 3.5, 0, 0));
+    }
+
+    @Test
+    void summarizeSkipsEmptySeries() {
+        assertThat(service.summarize(null)).isNull();
+        assertThat(service.summarize(Map.of(METRIC, series(new long[0], new double[0])))).isNull();
+    }
+
+    @Test
+    void storeSplitsSeriesIntoChunksWithDeterministicIds() {
+        service.store(ACTIVITY_ID, Map.of(METRIC, tenSamples()));
+
+        assertThat(stored).extracting(MetricSeriesChunk::getId)
+                .containsExactly("a1:heartRate:0", "a1:heartRate:1", "a1:heartRate:2");
+        assertThat(stored).extracting(MetricSeriesChunk::getCount).containsExactly(4, 4, 2);
+        MetricSeriesChunk second = stored.get(1);
+        assertThat(second.getBaseOffset()).isEqualTo(400);
+        assertThat(second.getLastOffset()).isEqualTo(700);
+        assertThat(second.getSum()).isEqualTo(5 + 6 + 7 + 8);
+        assertThat(second.decodeOffsets()).containsExactly(400, 500, 600, 700);
+        assertThat(second.decodeValues()).containsExactly(5, 6, 7, 8);
+    }
+
+    @Test
+    void downsamplesToFixedWindowsAcrossChunkBoundaries() {
+        storeWithSummary(tenSamples());
+
+        MetricSeriesResponse response = service.downsample(ACTIVITY_ID, METRIC, 500, Duration.ofMillis(500));
+
+        assertThat(response.getWindowMillis()).isEqualTo(500);
+        assertThat(response.getOffsets()).containsExactly(0, 500);
+        assertThat(response.getMin()).containsExactly(1, 6);
+        assertThat(response.getMax()).containsExactly(5, 10);
+        assertThat(response.getAvg()).containsExactly(3, 8);
+        assertThat(response.getCount()).containsExactly(5, 5);
+    }
+
+    @Test
+    void derivesTheWindowFromPointsWhenNoneIsGiven() {
+        storeWithSummary(tenSamples());
+
+        MetricSeriesResponse response = service.downsample(ACTIVITY_ID, METRIC, 2, null);
+
+        // span 0..900 inclusive is 901ms, split into 2 windows
+        assertThat(response.getWindowMillis()).isEqualTo(451);
+        assertThat(response.getOffsets()).containsExactly(0, 451);
+        assertThat(response.getCount()).containsExactly(5, 5);
+    }
+
+    @Test
+    void leavesOutWindowsWithoutSamples() {
+        storeWithSummary(series(new long[]{0, 50, 1000}, new double[]{1, 3, 7}));
+
+        MetricSeriesResponse response = service.downsample(ACTIVITY_ID, METRIC, 500, Duration.ofMillis(100));
+
+        assertThat(response.getOffsets()).containsExactly(0, 1000);
+        assertThat(response.getAvg()).containsExactly(2, 7);
+    }
+
+    @Test
+    void unknownMetricIsNotFound() {
+        storeWithSummary(tenSamples());
+
+        assertThatThrownBy(() -> service.downsample(ACTIVITY_ID, "power", 500, null))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void storeForAssignsIdAndCreatedAtBeforeTheActivityIsSaved() {
+        Map<String, MetricSeriesRequest> series = Map.of(METRIC, tenSamples());
+        Activity activity = Activity.builder().seriesSummaries(service.summarize(series)).build();
+
+        service.storeFor(activity, series);
+
+        assertThat(activity.getId()).isNotNull();
+        assertThat(activity.getCreatedAt()).isNotNull();
+        assertThat(stored).allSatisfy(chunk -> assertThat(chunk.getActivityId()).isEqualTo(activity.getId()));
+    }
+
+    @Test
+    void storeForLeavesActivitiesWithoutSeriesAlone() {
+        Activity activity = Activity.builder().build();
+
+        service.storeFor(activity, null);
+
+        assertThat(activity.getId()).isNull();
+        verify(mongoTemplate, never()).insert(anyCollection(), eq(MetricSeriesChunk.class));
+    }
+
+    @Test
+    void storeForFailsAndRemovesPartialChunksWhenTheInsertFails() {
+        when(mongoTemplate.insert(anyCollection(), eq(MetricSeriesChunk.class)))
+                .thenThrow(new DataAccessResourceFailureException("mongo down"));
+        Map<String, MetricSeriesRequest> series = Map.of(METRIC, tenSamples());
+        Activity activity = Activity.builder().seriesSummaries(service.summarize(series)).build();
+
+        assertThatThrownBy(() -> service.storeFor(activity, series))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(MetricSeriesChunk.class));
+        assertThat(removed.getValue().getQueryObject().get("activityId")).isEqualTo(activity.getId());
+    }
+
+    private void storeWithSummary(MetricSeriesRequest samples) {
+        Map<String, MetricSeriesRequest> series = Map.of(METRIC, samples);
+        service.store(ACTIVITY_ID, series);
+        Activity activity = Activity.builder().id(ACTIVITY_ID).seriesSummaries(service.summarize(series)).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Activity.class))).thenReturn(activity);
+    }
+
+    // offsets 0, 100, ..., 900 with values 1..10
+    private static MetricSeriesRequest tenSamples() {
+        return series(IntStream.range(0, 10).mapToLong(i -> i * 100L).toArray(),
+                IntStream.rangeClosed(1, 10).asDoubleStream().toArray());
+    }
+
+    private static MetricSeriesRequest series(long[] offsets, double[] values) {
+        MetricSeriesRequest request = new MetricSeriesRequest();
+        request.setOffsets(offsets);
+        request.setValues(values);
+        return request;
+    }
+}
@@ -0,0 +1,45 @@
+package com.fitness.aiservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class ConsumerMetricsConfig {
+
+    @Value("${rabbitmq.queue.name}")
+    private String queue;
+
+    @Bean
+    public MeterBinder activityQueueMetrics(AmqpAdmin amqpAdmin) {
+        return registry -> {
+            Gauge.builder("ai.consumer.queue.depth", () -> queueInfo(amqpAdmin, true))
+                    .description("Messages ready in the activity queue")
+                    .tag("queue", queue)
+                    .register(registry);
+            Gauge.builder("ai.consumer.queue.consumers", () -> queueInfo(amqpAdmin, false))
+                    .description("Consumers attached to the activity queue across all instances")
+                    .tag("queue", queue)
+                    .register(registry);
+        };
+    }
+
+    private double queueInfo(AmqpAdmin amqpAdmin, boolean messageCount) {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queue);
+            if (info == null) {
+                return Double.NaN;
+            }
+            return messageCount ? info.getMessageCount() : info.getConsumerCount();
+        } catch (Exception e) {
+            log.debug("Unable to read queue information for {}", queue, e);
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.fitness.aiservice.config;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Failures that count against the Gemini circuit breaker: throttling (429),
+ * server errors, timeouts and connection problems. Other 4xx responses are
+ * caused by the request itself and say nothing about Gemini's health.
+ */
+public class GeminiFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        if (throwable instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().value() == 429
+                    || responseException.getStatusCode().is5xxServerError();
+        }
+        return throwable instanceof TimeoutException
+                || throwable instanceof WebClientRequestException;
+    }
+}
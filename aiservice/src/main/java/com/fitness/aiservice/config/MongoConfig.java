@@ -2,9 +2,16 @@ package com.fitness.aiservice.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 
+/**
+ * Reactive auditing stamps createdAt on recommendations that
+ * RecommendationWriteBuffer flushes through ReactiveMongoTemplate when
+ * ai.pipeline.mode=reactive.
+ */
 @Configuration
 @EnableMongoAuditing
+@EnableReactiveMongoAuditing
 public class MongoConfig {
 
 }
@@ -1,10 +1,16 @@
 package com.fitness.aiservice.config;
+import com.fitness.common.amqp.SmileMessageConverter;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 
 @Configuration
 public class RabbitMqConfig {
@@ -18,9 +24,52 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.Key}")
     private String routeKey;
 
+    @Value("${rabbitmq.dead-letter.exchange:activity.dlx}")
+    private String deadLetterExchange;
+
+    @Value("${rabbitmq.dead-letter.queue:activity.queue.dlq}")
+    private String deadLetterQueue;
+
+    @Value("${rabbitmq.recommendation-events.exchange:recommendation.written}")
+    private String recommendationEventsExchange;
+
+    @Value("${ai.consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${ai.consumer.max-concurrency:1}")
+    private int maxConcurrency;
+
+    @Value("${ai.consumer.prefetch:250}")
+    private int prefetch;
+
+    @Value("${ai.consumer.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Declared with the same arguments by activityservice and aiservice;
+     * activities aiservice rejects without requeueing are routed to the
+     * dead-letter queue under their original routing key.
+     */
     @Bean
     public Queue activityQueue() {
-        return new Queue(queue, true);
+        return QueueBuilder.durable(queue)
+                .deadLetterExchange(deadLetterExchange)
+                .build();
+    }
+
+    @Bean
+    public DirectExchange activityDeadLetterExchange() {
+        return new DirectExchange(deadLetterExchange);
+    }
+
+    @Bean
+    public Queue activityDeadLetterQueue() {
+        return QueueBuilder.durable(deadLetterQueue).build();
+    }
+
+    @Bean
+    public Binding activityDeadLetterBinding(Queue activityDeadLetterQueue, DirectExchange activityDeadLetterExchange) {
+        return BindingBuilder.bind(activityDeadLetterQueue).to(activityDeadLetterExchange).with(routeKey);
     }
 
     @Bean
@@ -34,9 +83,34 @@ public class RabbitMqConfig {
 
     }
 
+    @Bean
+    public FanoutExchange recommendationEventsExchange() {
+        return new FanoutExchange(recommendationEventsExchange);
+    }
+
+    /**
+     * Decodes by content type: JSON by default, Smile for messages published
+     * with rabbitmq.codec=smile.
+     */
     @Bean
     public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter());
+        converter.addDelegate(SmileMessageConverter.CONTENT_TYPE, new SmileMessageConverter());
+        return converter;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory activityListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("activity-consumer-"));
+        }
+        return factory;
     }
 
 
@@ -0,0 +1,35 @@
+package com.fitness.aiservice.controller;
+
+import com.fitness.aiservice.service.RecommendationCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Admin operations on the LLM response cache. Mapped outside /api so the
+ * gateway does not expose it, and callers need a token with the admin.scope
+ * scope (see AdminEndpointSecurityAutoConfiguration in the common module).
+ * The local tier is only cleared on the instance that receives the call and
+ * expires on its own elsewhere.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/recommendation-cache")
+public class RecommendationCacheController {
+    private final RecommendationCache recommendationCache;
+
+    @DeleteMapping
+    public ResponseEntity<Long> invalidateAll() {
+        return ResponseEntity.ok(recommendationCache.invalidateAll());
+    }
+
+    @DeleteMapping("/{promptHash}")
+    public ResponseEntity<Void> invalidate(@PathVariable String promptHash) {
+        return recommendationCache.invalidate(promptHash)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -1,13 +1,18 @@
 package com.fitness.aiservice.controller;
 
 import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationPage;
+import com.fitness.aiservice.model.RecommendationSummary;
 import com.fitness.aiservice.service.RecommendationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -15,11 +20,28 @@ import java.util.List;
 @RequiredArgsConstructor
 @RequestMapping("/api/recommendations")
 public class RecommendationController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final RecommendationService recommendationService;
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Recommendation>> getUserRecommendation(@PathVariable String userId) {
-        return ResponseEntity.ok(recommendationService.getUserRecommendation(userId));
+    public ResponseEntity<List<RecommendationSummary>> getUserRecommendation(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        RecommendationPage<RecommendationSummary> page = recommendationService.getUserRecommendationPage(userId, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(value = "/user/{userId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUserRecommendations(@PathVariable String userId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> recommendationService.exportUserRecommendations(userId, out));
     }
 
     @GetMapping("/activity/{activityId}")
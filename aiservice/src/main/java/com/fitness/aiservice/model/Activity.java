@@ -13,6 +13,7 @@ public class Activity {
     private Integer caloriesBurned;
     private LocalDateTime startTime;
     private Map<String, Object> additionalMetrics;
+    private Map<String, MetricSummary> seriesSummaries;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
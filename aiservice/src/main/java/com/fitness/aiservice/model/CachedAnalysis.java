@@ -0,0 +1,26 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Document(collection = "recommendation_cache")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedAnalysis {
+    @Id
+    private String promptHash;
+    private String recommendation;
+    private List<String> improvements;
+    private List<String> suggestions;
+    private List<String> safety;
+    private Instant createdAt;
+}
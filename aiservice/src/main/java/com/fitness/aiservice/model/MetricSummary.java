@@ -0,0 +1,13 @@
+package com.fitness.aiservice.model;
+
+import lombok.Data;
+
+@Data
+public class MetricSummary {
+    private int count;
+    private double min;
+    private double max;
+    private double avg;
+    private long firstOffset;
+    private long lastOffset;
+}
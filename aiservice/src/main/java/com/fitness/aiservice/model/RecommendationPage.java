@@ -0,0 +1,13 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RecommendationPage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
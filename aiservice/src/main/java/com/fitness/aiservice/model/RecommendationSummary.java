@@ -0,0 +1,20 @@
+package com.fitness.aiservice.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDateTime;
+
+/**
+ * List-view projection of {@link Recommendation}; the analysis text and the
+ * improvement, suggestion and safety lists are left out.
+ */
+@Data
+public class RecommendationSummary {
+    @Id
+    private String id;
+    private String activityId;
+    private String activityType;
+    private String source;
+    private LocalDateTime createdAt;
+}
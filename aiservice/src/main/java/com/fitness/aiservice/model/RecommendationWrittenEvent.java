@@ -0,0 +1,19 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Published on the recommendation events fanout exchange after a bulk flush,
+ * naming the activities and users whose recommendations changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationWrittenEvent {
+    private Set<String> activityIds;
+    private Set<String> userIds;
+}
@@ -0,0 +1,9 @@
+package com.fitness.aiservice.repository;
+
+import com.fitness.aiservice.model.CachedAnalysis;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CachedAnalysisRepository extends MongoRepository<CachedAnalysis,String> {
+}
@@ -0,0 +1,78 @@
+package com.fitness.aiservice.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stops consuming activity.queue while the Gemini circuit breaker is open, so
+ * messages wait in the broker instead of being drained into failures, and
+ * resumes once the breaker lets trial calls through again.
+ */
+@Component
+@Slf4j
+public class ActivityConsumerBackPressure {
+    static final String LISTENER_ID = "activityListener";
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService lifecycleExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("activity-consumer-back-pressure").daemon().factory());
+    private volatile boolean paused;
+
+    public ActivityConsumerBackPressure(RabbitListenerEndpointRegistry listenerRegistry,
+                                        CircuitBreakerRegistry circuitBreakerRegistry,
+                                        MeterRegistry meterRegistry) {
+        this.listenerRegistry = listenerRegistry;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(GeminiService.RESILIENCE_INSTANCE);
+        Gauge.builder("ai.consumer.paused", () -> paused ? 1 : 0)
+                .description("1 while activity.queue consumption is paused by the Gemini circuit breaker")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watchCircuitBreaker() {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            switch (event.getStateTransition().getToState()) {
+                case OPEN, FORCED_OPEN -> lifecycleExecutor.execute(this::pause);
+                case CLOSED, HALF_OPEN -> lifecycleExecutor.execute(this::resume);
+                default -> {
+                }
+            }
+        });
+    }
+
+    private void pause() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container != null && container.isRunning()) {
+            log.warn("Gemini circuit breaker is {}, pausing consumption of activity.queue", circuitBreaker.getState());
+            container.stop();
+            paused = true;
+        }
+    }
+
+    private void resume() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container != null && paused && !container.isRunning()) {
+            log.info("Gemini circuit breaker is {}, resuming consumption of activity.queue", circuitBreaker.getState());
+            container.start();
+        }
+        paused = false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lifecycleExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class ActivityConsumerMetrics {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer queueLag;
+
+    public ActivityConsumerMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("ai.consumer.in_flight", inFlight, AtomicInteger::get)
+                .description("Activities currently being processed by this instance")
+                .register(meterRegistry);
+        this.queueLag = Timer.builder("ai.consumer.lag")
+                .description("Time between an activity being created and picked up from the queue")
+                .register(meterRegistry);
+    }
+
+    public void received(Activity activity) {
+        inFlight.incrementAndGet();
+        if (activity.getCreatedAt() != null) {
+            Duration lag = Duration.between(activity.getCreatedAt(), LocalDateTime.now());
+            if (!lag.isNegative()) {
+                queueLag.record(lag);
+            }
+        }
+    }
+
+    public void completed() {
+        inFlight.decrementAndGet();
+    }
+}
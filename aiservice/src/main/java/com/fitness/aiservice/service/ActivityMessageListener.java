@@ -1,28 +1,68 @@
 package com.fitness.aiservice.service;
 
 import com.fitness.aiservice.model.Activity;
-import com.fitness.aiservice.model.Recommendation;
-import com.fitness.aiservice.repository.RecommendationRepository;
+import com.rabbitmq.client.Channel;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
+/**
+ * Acknowledges manually: a message is acked only once the bulk write holding
+ * its recommendation has been flushed. When generating or storing the
+ * recommendation fails, transient failures are requeued and everything else
+ * is rejected into the dead-letter queue (see {@link ActivityRedeliveryPolicy}).
+ */
 @Service
 @Slf4j
 @AllArgsConstructor
+@ConditionalOnProperty(name = "ai.pipeline.mode", havingValue = "blocking", matchIfMissing = true)
 public class ActivityMessageListener {
-    private AiActivityService aiService;
-    private RecommendationRepository recommendationRepository;
+    private RecommendationPipeline recommendationPipeline;
+    private ActivityConsumerMetrics consumerMetrics;
 
-    @RabbitListener(queues = "activity.queue")
-    public void processActivity(Activity activity){
+    @RabbitListener(id = ActivityConsumerBackPressure.LISTENER_ID, queues = "${rabbitmq.queue.name}",
+            containerFactory = "activityListenerContainerFactory", ackMode = "MANUAL")
+    public void processActivity(Activity activity, Channel channel,
+                                @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws IOException {
         log.info("Received activity for processing: {}", activity.getId());
-        //log.info("Received Recommendation from AI: {}", aiService.generateRecommendation(activity));
-        Recommendation recommendation = aiService.generateRecommendation(activity);
-        recommendationRepository.save(recommendation);
+        consumerMetrics.received(activity);
+        try {
+            recommendationPipeline.process(activity).whenComplete((stored, error) -> {
+                try {
+                    if (error == null) {
+                        channel.basicAck(deliveryTag, false);
+                    } else {
+                        reject(channel, deliveryTag, activity, error);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // AlreadyClosedException/AmqpException land here once the channel is gone;
+                    // the broker redelivers the unsettled message to another consumer
+                    log.warn("Unable to settle delivery {} for activity {}: {}", deliveryTag, activity.getId(), e.toString());
+                } finally {
+                    consumerMetrics.completed();
+                }
+            });
+        } catch (RuntimeException e) {
+            consumerMetrics.completed();
+            reject(channel, deliveryTag, activity, e);
+            throw e;
+        }
+    }
 
+    private static void reject(Channel channel, long deliveryTag, Activity activity, Throwable error) throws IOException {
+        boolean requeue = ActivityRedeliveryPolicy.shouldRequeue(error);
+        if (requeue) {
+            log.warn("Failed to store recommendation for activity {}, requeueing: {}", activity.getId(), error.toString());
+        } else {
+            log.error("Failed to store recommendation for activity {}, dead-lettering", activity.getId(), error);
+        }
+        channel.basicNack(deliveryTag, false, requeue);
     }
 
 }
@@ -0,0 +1,38 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.GeminiFailurePredicate;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * Decides whether a failed activity goes back to activity.queue or is
+ * dead-lettered. Only failures that another attempt can get past are
+ * requeued: Resilience4j rejections, Gemini throttling, server errors and
+ * timeouts, and MongoDB being unreachable. Bad payloads and other 4xx answers
+ * would fail the same way on every delivery.
+ */
+final class ActivityRedeliveryPolicy {
+    private static final GeminiFailurePredicate GEMINI_FAILURE = new GeminiFailurePredicate();
+
+    private ActivityRedeliveryPolicy() {
+    }
+
+    static boolean shouldRequeue(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException
+                    || cause instanceof BulkheadFullException
+                    || cause instanceof RequestNotPermitted
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || GEMINI_FAILURE.test(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
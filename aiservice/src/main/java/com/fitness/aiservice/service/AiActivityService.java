@@ -1,143 +1,183 @@
 package com.fitness.aiservice.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.CachedAnalysis;
 import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.service.GeminiResponseParser.ParsedAnalysis;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 
 public class AiActivityService {
-    private final GeminiService geminiService;
+    public static final String SOURCE_LLM = "LLM";
+    public static final String SOURCE_CACHE = "CACHE";
+
+    private final LlmClient llmClient;
+    private final GeminiResponseParser responseParser;
+    private final RecommendationCache recommendationCache;
+    private final LocalRecommendationEngine localRecommendationEngine;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService itemFallbackExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("recommendation-item-", 0).factory());
 
     public Recommendation generateRecommendation(Activity activity){
         String prompt = createPromptForActivity(activity);
-        String aiResponse = geminiService.getAnswer(prompt);
-        log.info("Response from AI: {}", aiResponse);
-        return processAIResponse(activity,aiResponse);
+        String cacheKey = recommendationCache.keyFor(prompt);
+        Optional<CachedAnalysis> cached = recommendationCache.get(cacheKey);
+        if (cached.isPresent()) {
+            log.info("Serving cached analysis for activity {}", activity.getId());
+            return fromCachedAnalysis(activity, cached.get());
+        }
+        return generateFromLlm(activity, prompt, cacheKey);
     }
 
-    private Recommendation processAIResponse(Activity activity,String aiResponse){
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(aiResponse);
-
-            JsonNode textNode = rootNode.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String jsonContent =  textNode.asText()
-                    .replaceAll("```json\\n","")
-                    .replaceAll("\\n```","")
-                    .trim();
-  //          log.info("Parsed Response from AI: {}", jsonContent);
-            JsonNode analysisJson = mapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall","Overall:");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace","Pace:");
-            addAnalysisSection(fullAnalysis, analysisNode, "heartRate","HeartRate:");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned","CaloriesBurned:");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
-
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getType())
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
-        }catch (Exception e){
-            e.printStackTrace();
-            return createDefaultRecommendation(activity);
+    /**
+     * Analyzes several activities with a single LLM request. Cache hits are
+     * answered locally; anything the batch answer does not cover, or a batch
+     * answer that cannot be parsed at all, falls back to per-activity requests.
+     * Those run concurrently, bounded by {@link LlmCallLimiter}, and an item
+     * whose request fails gets the local rule engine's answer, so one failure
+     * never costs the rest of the batch its results.
+     */
+    public Map<String, Recommendation> generateRecommendations(List<Activity> activities){
+        Map<String, Recommendation> results = new HashMap<>();
+        Map<String, Activity> misses = new LinkedHashMap<>();
+        Map<String, String> cacheKeys = new HashMap<>();
+        for (Activity activity : activities) {
+            String cacheKey = recommendationCache.keyFor(createPromptForActivity(activity));
+            Optional<CachedAnalysis> cached = recommendationCache.get(cacheKey);
+            if (cached.isPresent()) {
+                results.put(activity.getId(), fromCachedAnalysis(activity, cached.get()));
+            } else {
+                misses.put(activity.getId(), activity);
+                cacheKeys.put(activity.getId(), cacheKey);
+            }
         }
 
-    }
+        if (misses.size() > 1) {
+            try {
+                String aiResponse = llmClient.getAnswer(createPromptForActivities(misses.values()));
+                log.info("Batch response from AI for {} activities: {}", misses.size(), aiResponse);
+                for (ParsedAnalysis analysis : responseParser.parseBatch(aiResponse)) {
+                    Activity activity = misses.get(analysis.activityId());
+                    if (activity != null && analysis.hasAnalysis()) {
+                        Recommendation recommendation = toRecommendation(activity, analysis);
+                        recommendationCache.put(cacheKeys.get(activity.getId()), recommendation);
+                        results.put(activity.getId(), recommendation);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Batch analysis of {} activities failed, falling back to single requests: {}",
+                        misses.size(), e.getMessage());
+            }
+        }
 
-    private Recommendation createDefaultRecommendation(Activity activity) {
-        return Recommendation.builder()
-                .activityId(activity.getId())
-                .activityType(activity.getType())
-                .userId(activity.getUserId())
-                .recommendation("Unable to generate detailed analysis")
-                .improvements(Collections.singletonList("Continue with your routine"))
-                .suggestions(Collections.singletonList("Consider Consulting a fitness professional "))
-                .safety(Arrays.asList(
-                        "Always warmup before exercise",
-                        "Stay Hydrated",
-                        "Listen to your body"))
-                .build();
+        Map<String, CompletableFuture<Recommendation>> fallbacks = new LinkedHashMap<>();
+        for (Activity activity : misses.values()) {
+            if (!results.containsKey(activity.getId())) {
+                meterRegistry.counter("ai.batch.item_fallbacks").increment();
+                fallbacks.put(activity.getId(), CompletableFuture.supplyAsync(() -> generateFromLlm(
+                        activity, createPromptForActivity(activity), cacheKeys.get(activity.getId())), itemFallbackExecutor));
+            }
+        }
+        fallbacks.forEach((activityId, fallback) -> {
+            try {
+                results.put(activityId, fallback.join());
+            } catch (Exception e) {
+                log.warn("LLM request for activity {} failed, using the rule engine: {}", activityId, e.getMessage());
+                meterRegistry.counter("ai.batch.item_failures").increment();
+                results.put(activityId, localRecommendationEngine.recommend(misses.get(activityId)));
+            }
+        });
+        return results;
     }
 
-    private List<String> extractSafetyGuidelines(JsonNode safetyNode) {
-        List<String> safetyGuidelines = new ArrayList<>();
-        if(safetyNode.isArray()){
-            safetyNode.forEach(Item -> safetyGuidelines.add(Item.asText()));
+    private Recommendation generateFromLlm(Activity activity, String prompt, String cacheKey) {
+        String aiResponse = llmClient.getAnswer(prompt);
+        log.info("Response from AI: {}", aiResponse);
+        try {
+            Recommendation recommendation = processAIResponse(activity, aiResponse);
+            recommendationCache.put(cacheKey, recommendation);
+            return recommendation;
+        } catch (Exception e) {
+            log.error("Unable to parse AI response for activity {}", activity.getId(), e);
+            return localRecommendationEngine.recommend(activity);
         }
-        return safetyGuidelines.isEmpty() ?
-                Collections.singletonList("Follow General Safety Guidelines") :
-                safetyGuidelines;
     }
 
-    private List<String> extractSuggestions(JsonNode suggestionsNode) {
-        List<String> suggestionList = new ArrayList<>();
-        if(suggestionsNode.isArray()){
-            suggestionsNode.forEach(suggestion -> {
-                String workout =  suggestion.path("workout").asText();
-                String description =   suggestion.path("description").asText();
-                suggestionList.add(String.format("%s: %s", workout, description));
-
-            });
-        }
-        return suggestionList.isEmpty() ?
-                Collections.singletonList("No specific Suggestion provided: ") :
-                suggestionList;
+    public Mono<Recommendation> generateRecommendationAsync(Activity activity){
+        String prompt = createPromptForActivity(activity);
+        String cacheKey = recommendationCache.keyFor(prompt);
+        return recommendationCache.getAsync(cacheKey)
+                .map(cached -> fromCachedAnalysis(activity, cached))
+                .switchIfEmpty(Mono.defer(() -> llmClient.getAnswerAsync(prompt)
+                        .doOnNext(aiResponse -> log.info("Response from AI: {}", aiResponse))
+                        .flatMap(aiResponse -> Mono.fromCallable(() -> processAIResponse(activity, aiResponse))
+                                .flatMap(recommendation -> recommendationCache.putAsync(cacheKey, recommendation)
+                                        .thenReturn(recommendation))
+                                .onErrorResume(e -> {
+                                    log.error("Unable to parse AI response for activity {}", activity.getId(), e);
+                                    return Mono.just(localRecommendationEngine.recommend(activity));
+                                }))));
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        itemFallbackExecutor.shutdown();
     }
 
-    private List<String> extractImprovements(JsonNode improvementsNode) {
-        List<String> improvements = new ArrayList<>();
-        if(improvementsNode.isArray()){
-            improvementsNode.forEach(improvement -> {
-                String area = improvement.path("area").asText();
-                String detail = improvement.path("recommendation").asText();
-                improvements.add(String.format("%s: %s", area, detail));
-            });
-        }
-        return improvements.isEmpty() ?
-                Collections.singletonList("NO specific Improvements provided: ") :
-                improvements;
+    private Recommendation processAIResponse(Activity activity,String aiResponse) throws IOException {
+        return toRecommendation(activity, responseParser.parse(aiResponse));
+    }
 
+    private Recommendation toRecommendation(Activity activity, ParsedAnalysis analysis) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(analysis.recommendation())
+                .improvements(analysis.improvements())
+                .suggestions(analysis.suggestions())
+                .safety(analysis.safety())
+                .source(SOURCE_LLM)
+                .createdAt(LocalDateTime.now())
+                .build();
     }
 
-    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
-        if(!analysisNode.path(key).isMissingNode()){
-            fullAnalysis.append(prefix)
-                    .append(analysisNode.path(key).asText())
-                    .append(":\n\n");
-        }
+    private Recommendation fromCachedAnalysis(Activity activity, CachedAnalysis analysis) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(analysis.getRecommendation())
+                .improvements(analysis.getImprovements())
+                .suggestions(analysis.getSuggestions())
+                .safety(analysis.getSafety())
+                .source(SOURCE_CACHE)
+                .createdAt(LocalDateTime.now())
+                .build();
     }
 
     private String createPromptForActivity(Activity activity) {
@@ -174,7 +214,7 @@ public class AiActivityService {
                 activity Type: %s,
                 Duration: %d minutes,
                 Calories Burned: %d minutes,
-                Additional Metrics: %s
+                Additional Metrics: %s%s
                 
                 Provide detailed analysis focusing on performance, improvements, next workout suggestions and safety points.
                 
@@ -183,8 +223,74 @@ public class AiActivityService {
                         activity.getType(),
                         activity.getDuration(),
                         activity.getCaloriesBurned(),
-                        activity.getAdditionalMetrics()
+                        activity.getAdditionalMetrics() == null ? null : new TreeMap<>(activity.getAdditionalMetrics()),
+                        describeSeries(activity, "\nSample Series: ")
 
         );
     }
+
+    /**
+     * Summary of the activity's sample series after the given label, or an
+     * empty string so activities without series get no series line at all.
+     */
+    private static String describeSeries(Activity activity, String label) {
+        if (activity.getSeriesSummaries() == null || activity.getSeriesSummaries().isEmpty()) {
+            return "";
+        }
+        return label + new TreeMap<>(activity.getSeriesSummaries()).entrySet().stream()
+                .map(entry -> String.format(Locale.ROOT, "%s avg %.1f, min %.1f, max %.1f over %d samples and %d seconds",
+                        entry.getKey(), entry.getValue().getAvg(), entry.getValue().getMin(), entry.getValue().getMax(),
+                        entry.getValue().getCount(),
+                        (entry.getValue().getLastOffset() - entry.getValue().getFirstOffset()) / 1000))
+                .collect(Collectors.joining("; "));
+    }
+
+    private String createPromptForActivities(Collection<Activity> activities) {
+        String activityLines = activities.stream()
+                .map(activity -> String.format(
+                        "- activityId: %s, activity Type: %s, Duration: %d minutes, Calories Burned: %d, Additional Metrics: %s%s",
+                        activity.getId(),
+                        activity.getType(),
+                        activity.getDuration(),
+                        activity.getCaloriesBurned(),
+                        activity.getAdditionalMetrics() == null ? null : new TreeMap<>(activity.getAdditionalMetrics()),
+                        describeSeries(activity, ", Sample Series: ")))
+                .collect(Collectors.joining("\n"));
+        return String.format("""
+                Analyze each of the following fitness activities and respond with a JSON array only, containing one element per activity in this format:
+                [
+                  {
+                    "activityId": "the activityId exactly as given below",
+                    "analysis": {
+                        "overall": "Overall Analysis Here",
+                        "pace": "Pace Analysis Here",
+                        "heartRate": "HeartRate Analysis Here",
+                        "caloriesBurned": "calories analysis Here"
+                    },
+                    "improvements": [
+                       {
+                          "area": "AreaName",
+                          "recommendation": "Detailed Recommendation"
+                       }
+                    ],
+                    "suggestions": [
+                        {
+                          "workout": "Workout name",
+                          "description": "Detailed workout description"
+                        }
+                    ],
+                    "safety": [
+                       "Safety point 1",
+                       "Safety point 2"
+                    ]
+                  }
+                ]
+
+                Activities:
+                %s
+
+                Provide detailed analysis for every activity focusing on performance, improvements, next workout suggestions and safety points.
+
+                """, activityLines);
+    }
 }
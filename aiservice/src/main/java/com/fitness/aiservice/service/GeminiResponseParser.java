@@ -0,0 +1,272 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams a Gemini generateContent envelope straight into analysis fields.
+ * The model's text is parsed in place from the envelope parser's character
+ * buffer, so no intermediate String or JsonNode tree is built for it.
+ * Code fences and prose around the JSON are skipped, trailing commas are
+ * accepted, and unknown fields are ignored.
+ */
+@Component
+public class GeminiResponseParser {
+    private static final String FENCE = "```";
+
+    private final JsonMapper mapper = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .build();
+
+    public ParsedAnalysis parse(String aiResponse) throws IOException {
+        try (JsonParser envelope = openResponseText(aiResponse);
+             JsonParser analysis = openAnalysis(envelope)) {
+            if (analysis.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(analysis, "Expected a JSON object in the AI response");
+            }
+            return readAnalysis(analysis);
+        }
+    }
+
+    public List<ParsedAnalysis> parseBatch(String aiResponse) throws IOException {
+        try (JsonParser envelope = openResponseText(aiResponse);
+             JsonParser analyses = openAnalysis(envelope)) {
+            if (analyses.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(analyses, "Expected a JSON array in the AI batch response");
+            }
+            List<ParsedAnalysis> results = new ArrayList<>();
+            JsonToken token;
+            while ((token = analyses.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    results.add(readAnalysis(analyses));
+                } else {
+                    analyses.skipChildren();
+                }
+            }
+            return results;
+        }
+    }
+
+    private JsonParser openResponseText(String aiResponse) throws IOException {
+        JsonParser parser = mapper.createParser(aiResponse);
+        try {
+            expect(parser, JsonToken.START_OBJECT);
+            seekField(parser, "candidates");
+            expect(parser, JsonToken.START_ARRAY);
+            expect(parser, JsonToken.START_OBJECT);
+            seekField(parser, "content");
+            expect(parser, JsonToken.START_OBJECT);
+            seekField(parser, "parts");
+            expect(parser, JsonToken.START_ARRAY);
+            expect(parser, JsonToken.START_OBJECT);
+            seekField(parser, "text");
+            expect(parser, JsonToken.VALUE_STRING);
+            return parser;
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    private JsonParser openAnalysis(JsonParser envelope) throws IOException {
+        char[] text = envelope.getTextCharacters();
+        int start = envelope.getTextOffset();
+        int end = start + envelope.getTextLength();
+
+        int open = indexOf(text, start, end, FENCE);
+        if (open >= 0) {
+            int lineEnd = indexOf(text, open, end, "\n");
+            start = lineEnd >= 0 ? lineEnd + 1 : open + FENCE.length();
+            int close = lastIndexOf(text, start, end, FENCE);
+            if (close >= 0) {
+                end = close;
+            }
+        }
+        // an unfenced answer may still open with a sentence of prose; anything after the JSON is never read
+        while (start < end && text[start] != '{' && text[start] != '[') {
+            start++;
+        }
+        return mapper.createParser(text, start, end - start);
+    }
+
+    private ParsedAnalysis readAnalysis(JsonParser parser) throws IOException {
+        String activityId = null;
+        boolean hasAnalysis = false;
+        String[] sections = new String[4];
+        List<String> improvements = new ArrayList<>();
+        List<String> suggestions = new ArrayList<>();
+        List<String> safety = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "activityId" -> activityId = scalarText(parser, value);
+                case "analysis" -> {
+                    hasAnalysis = true;
+                    readSections(parser, value, sections);
+                }
+                case "improvements" -> readPairs(parser, value, "area", "recommendation", improvements);
+                case "suggestions" -> readPairs(parser, value, "workout", "description", suggestions);
+                case "safety" -> readStrings(parser, value, safety);
+                default -> parser.skipChildren();
+            }
+        }
+
+        StringBuilder fullAnalysis = new StringBuilder();
+        appendSection(fullAnalysis, "Overall:", sections[0]);
+        appendSection(fullAnalysis, "Pace:", sections[1]);
+        appendSection(fullAnalysis, "HeartRate:", sections[2]);
+        appendSection(fullAnalysis, "CaloriesBurned:", sections[3]);
+
+        return new ParsedAnalysis(
+                activityId,
+                hasAnalysis,
+                fullAnalysis.toString().trim(),
+                orDefault(improvements, "NO specific Improvements provided: "),
+                orDefault(suggestions, "No specific Suggestion provided: "),
+                orDefault(safety, "Follow General Safety Guidelines"));
+    }
+
+    private void readSections(JsonParser parser, JsonToken value, String[] sections) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken sectionValue = parser.nextToken();
+            int index = switch (field) {
+                case "overall" -> 0;
+                case "pace" -> 1;
+                case "heartRate" -> 2;
+                case "caloriesBurned" -> 3;
+                default -> -1;
+            };
+            if (index >= 0) {
+                sections[index] = scalarText(parser, sectionValue);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readPairs(JsonParser parser, JsonToken value, String first, String second,
+                           List<String> target) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            String firstValue = "";
+            String secondValue = "";
+            if (element == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if (first.equals(field)) {
+                        firstValue = scalarText(parser, fieldValue);
+                    } else if (second.equals(field)) {
+                        secondValue = scalarText(parser, fieldValue);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            target.add(firstValue + ": " + secondValue);
+        }
+    }
+
+    private void readStrings(JsonParser parser, JsonToken value, List<String> target) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            target.add(scalarText(parser, element));
+        }
+    }
+
+    private String scalarText(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isScalarValue()) {
+            return value == JsonToken.VALUE_NULL ? "null" : parser.getText();
+        }
+        parser.skipChildren();
+        return "";
+    }
+
+    private static void appendSection(StringBuilder fullAnalysis, String prefix, String section) {
+        if (section != null) {
+            fullAnalysis.append(prefix).append(section).append(":\n\n");
+        }
+    }
+
+    private static List<String> orDefault(List<String> values, String fallback) {
+        return values.isEmpty() ? Collections.singletonList(fallback) : values;
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) throws IOException {
+        if (parser.nextToken() != expected) {
+            throw new JsonParseException(parser, "Unexpected AI response structure, expected " + expected);
+        }
+    }
+
+    private static void seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        throw new JsonParseException(parser, "Missing '" + name + "' in AI response");
+    }
+
+    private static int indexOf(char[] text, int from, int to, String needle) {
+        outer:
+        for (int i = from; i <= to - needle.length(); i++) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (text[i + j] != needle.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(char[] text, int from, int to, String needle) {
+        outer:
+        for (int i = to - needle.length(); i >= from; i--) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (text[i + j] != needle.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    public record ParsedAnalysis(String activityId,
+                                 boolean hasAnalysis,
+                                 String recommendation,
+                                 List<String> improvements,
+                                 List<String> suggestions,
+                                 List<String> safety) {
+    }
+}
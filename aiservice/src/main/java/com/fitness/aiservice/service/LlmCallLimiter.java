@@ -0,0 +1,196 @@
+package com.fitness.aiservice.service;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Hard cap on the number of LLM calls this instance has outstanding at once,
+ * independent of how many listener threads are consuming activity.queue.
+ * Blocking callers wait for a permit; in the reactive pipeline a call is
+ * subscribed only once a permit is handed to it, without blocking any thread.
+ * Both kinds of caller wait in one FIFO queue and a free permit always goes
+ * to the longest waiting one, so neither kind can starve the other, and a new
+ * caller never overtakes a queued one. The cap never exceeds the gemini
+ * bulkhead, so calls queue here instead of being rejected by it.
+ */
+@Component
+@Slf4j
+public class LlmCallLimiter {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+    private int available;
+
+    public LlmCallLimiter(@Value("${ai.consumer.max-in-flight-llm-calls:16}") int maxInFlight,
+                          BulkheadRegistry bulkheadRegistry,
+                          MeterRegistry meterRegistry) {
+        int bulkheadLimit = bulkheadRegistry.bulkhead(GeminiService.RESILIENCE_INSTANCE)
+                .getBulkheadConfig().getMaxConcurrentCalls();
+        if (maxInFlight > bulkheadLimit) {
+            log.warn("ai.consumer.max-in-flight-llm-calls={} exceeds the gemini bulkhead, capping at {}",
+                    maxInFlight, bulkheadLimit);
+        }
+        this.maxInFlight = Math.min(maxInFlight, bulkheadLimit);
+        this.available = this.maxInFlight;
+        Gauge.builder("ai.llm.in_flight", inFlight, AtomicInteger::get)
+                .description("LLM calls currently outstanding")
+                .register(meterRegistry);
+        Gauge.builder("ai.llm.max_in_flight", () -> this.maxInFlight)
+                .description("Configured cap on outstanding LLM calls")
+                .register(meterRegistry);
+        Gauge.builder("ai.llm.waiting", this, LlmCallLimiter::getWaiting)
+                .description("LLM calls waiting for a permit")
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> llmCall) {
+        Permit permit = acquireBlocking();
+        inFlight.incrementAndGet();
+        try {
+            return llmCall.get();
+        } finally {
+            inFlight.decrementAndGet();
+            permit.release();
+        }
+    }
+
+    public <T> Mono<T> track(Mono<T> llmCall) {
+        return acquire().flatMap(permit -> {
+            inFlight.incrementAndGet();
+            return llmCall.doFinally(signal -> {
+                inFlight.decrementAndGet();
+                permit.release();
+            });
+        });
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit acquireBlocking() {
+        CompletableFuture<Permit> granted = new CompletableFuture<>();
+        Waiter waiter = new Waiter(granted::complete);
+        if (enqueueUnlessFree(waiter)) {
+            return waiter.permit;
+        }
+        try {
+            return granted.get();
+        } catch (InterruptedException e) {
+            withdraw(waiter);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an LLM call slot", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Emits once a permit is held. Cancelling while still queued only leaves
+     * the queue; cancelling after {@link #release} handed the permit over
+     * returns it. Returning a {@link Permit} is idempotent, so that race
+     * cannot free a permit twice.
+     */
+    private Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink::success);
+            if (enqueueUnlessFree(waiter)) {
+                sink.success(waiter.permit);
+                return;
+            }
+            // registered after queueing: a sink cancelled before this runs the callback right away
+            sink.onCancel(() -> withdraw(waiter));
+        });
+    }
+
+    /**
+     * Takes a free permit for the waiter when nobody is queued ahead of it,
+     * otherwise queues it. Returns whether the permit is already held.
+     */
+    private boolean enqueueUnlessFree(Waiter waiter) {
+        lock.lock();
+        try {
+            if (available > 0 && waiters.isEmpty()) {
+                available--;
+                return true;
+            }
+            waiters.addLast(waiter);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withdraw(Waiter waiter) {
+        boolean queued;
+        lock.lock();
+        try {
+            queued = waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        if (!queued) {
+            // release() already dequeued it, so the permit is ours to return
+            waiter.permit.release();
+        }
+    }
+
+    private void release() {
+        Waiter next;
+        lock.lock();
+        try {
+            next = waiters.pollFirst();
+            if (next == null) {
+                available++;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        next.grant.accept(next.permit);
+    }
+
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                LlmCallLimiter.this.release();
+            }
+        }
+    }
+
+    private final class Waiter {
+        private final Permit permit = new Permit();
+        private final Consumer<Permit> grant;
+
+        Waiter(Consumer<Permit> grant) {
+            this.grant = grant;
+        }
+    }
+}
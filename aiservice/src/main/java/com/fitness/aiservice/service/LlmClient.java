@@ -0,0 +1,14 @@
+package com.fitness.aiservice.service;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Text-in, text-out access to the language model. Answers are the raw
+ * generateContent response envelope, as parsed by {@link GeminiResponseParser}.
+ */
+public interface LlmClient {
+
+    String getAnswer(String prompt);
+
+    Mono<String> getAnswerAsync(String prompt);
+}
@@ -0,0 +1,232 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.MetricSummary;
+import com.fitness.aiservice.model.Recommendation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic, allocation-light recommendations computed from the activity
+ * alone. Used as the fast answer while the LLM is slow and as the fallback
+ * when it fails, so users never get a generic placeholder.
+ */
+@Component
+public class LocalRecommendationEngine {
+    public static final String SOURCE = "RULES";
+
+    public Recommendation recommend(Activity activity) {
+        Profile profile = Profile.of(activity.getType());
+        int duration = activity.getDuration() == null ? 0 : activity.getDuration();
+        int calories = activity.getCaloriesBurned() == null ? 0 : activity.getCaloriesBurned();
+        double caloriesPerMinute = duration > 0 ? (double) calories / duration : 0;
+        Map<String, Object> metrics = activity.getAdditionalMetrics();
+        MetricSummary heartRateSeries = activity.getSeriesSummaries() == null ? null : activity.getSeriesSummaries().get("heartRate");
+        Double heartRate = metric(metrics, "heartRate", "avgHeartRate", "averageHeartRate", "heart_rate", "hr");
+        Double maxHeartRate = metric(metrics, "maxHeartRate", "max_heart_rate", "maxHr");
+        if (heartRateSeries != null && heartRateSeries.getCount() > 0) {
+            heartRate = heartRate == null ? heartRateSeries.getAvg() : heartRate;
+            maxHeartRate = maxHeartRate == null ? heartRateSeries.getMax() : maxHeartRate;
+        }
+        Double distance = metric(metrics, "distance", "distanceKm", "distance_km");
+        Double pace = metric(metrics, "pace", "avgPace", "averagePace");
+
+        Intensity intensity = caloriesPerMinute == 0 ? Intensity.UNKNOWN
+                : caloriesPerMinute < profile.lowCaloriesPerMinute ? Intensity.LOW
+                : caloriesPerMinute > profile.highCaloriesPerMinute ? Intensity.HIGH
+                : Intensity.MODERATE;
+
+        StringBuilder analysis = new StringBuilder();
+        analysis.append("Overall:")
+                .append(String.format(Locale.ROOT, "%s session of %d minutes burning %d kcal", profile.label, duration, calories));
+        if (intensity != Intensity.UNKNOWN) {
+            analysis.append(String.format(Locale.ROOT, " (%.1f kcal/min), a %s intensity effort for %s.",
+                    caloriesPerMinute, intensity.label, profile.label.toLowerCase(Locale.ROOT)));
+        } else {
+            analysis.append('.');
+        }
+        analysis.append(":\n\n");
+
+        if (pace != null) {
+            analysis.append(String.format(Locale.ROOT, "Pace:Average pace of %.2f min/km.:\n\n", pace));
+        } else if (distance != null && distance > 0 && duration > 0) {
+            analysis.append(String.format(Locale.ROOT, "Pace:%.2f km in %d minutes, %.2f min/km (%.1f km/h).:\n\n",
+                    distance, duration, duration / distance, distance / (duration / 60.0)));
+        }
+
+        if (heartRate != null) {
+            analysis.append(String.format(Locale.ROOT, "HeartRate:Average heart rate of %.0f bpm, mostly in the %s zone.:\n\n",
+                    heartRate, heartRateZone(heartRate)));
+        }
+
+        if (intensity != Intensity.UNKNOWN) {
+            analysis.append(String.format(Locale.ROOT,
+                    "CaloriesBurned:%.1f kcal/min is %s the typical %.0f-%.0f kcal/min range for %s.:\n\n",
+                    caloriesPerMinute,
+                    intensity == Intensity.LOW ? "below" : intensity == Intensity.HIGH ? "above" : "within",
+                    profile.lowCaloriesPerMinute, profile.highCaloriesPerMinute,
+                    profile.label.toLowerCase(Locale.ROOT)));
+        }
+
+        List<String> improvements = new ArrayList<>(3);
+        if (duration > 0 && duration < 20) {
+            improvements.add("Duration: Build toward 30 minutes per session by adding 5 minutes each week");
+        }
+        if (intensity == Intensity.LOW) {
+            improvements.add("Intensity: " + profile.intensityTip);
+        } else if (intensity == Intensity.HIGH) {
+            improvements.add("Recovery: Follow this session with an easy day to absorb the training load");
+        }
+        if (improvements.isEmpty()) {
+            improvements.add("Consistency: Keep this routine and progress volume by no more than 10% per week");
+        }
+
+        List<String> safety = new ArrayList<>(4);
+        safety.add("Always warm up for 5-10 minutes before starting");
+        safety.add(profile.safetyTip);
+        if ((heartRate != null && heartRate >= 170) || (maxHeartRate != null && maxHeartRate >= 190)) {
+            safety.add("Your heart rate reached a very high zone; stop and rest if you feel dizzy or short of breath");
+        }
+        safety.add("Stay hydrated and listen to your body");
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(analysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(List.of(profile.suggestions))
+                .safety(safety)
+                .source(SOURCE)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static String heartRateZone(double heartRate) {
+        if (heartRate < 115) {
+            return "light recovery";
+        } else if (heartRate < 145) {
+            return "aerobic base";
+        } else if (heartRate < 165) {
+            return "tempo";
+        }
+        return "high intensity";
+    }
+
+    private static Double metric(Map<String, Object> metrics, String... keys) {
+        if (metrics == null) {
+            return null;
+        }
+        for (String key : keys) {
+            Object value = metrics.get(key);
+            if (value instanceof Number number) {
+                return number.doubleValue();
+            }
+            if (value instanceof String text) {
+                try {
+                    return Double.parseDouble(text.trim());
+                } catch (NumberFormatException ignored) {
+                    // not a plain number, try the next alias
+                }
+            }
+        }
+        return null;
+    }
+
+    private enum Intensity {
+        UNKNOWN(""), LOW("low"), MODERATE("moderate"), HIGH("high");
+
+        private final String label;
+
+        Intensity(String label) {
+            this.label = label;
+        }
+    }
+
+    private enum Profile {
+        RUNNING("Running", 9, 14,
+                "Add one interval session per week, e.g. 6 x 400 m at 5K pace",
+                "Increase weekly mileage gradually to avoid shin splints and stress injuries",
+                "Easy Run: 30-40 minutes at a conversational pace",
+                "Intervals: 6 x 400 m fast with 90 seconds of walking recovery"),
+        WALKING("Walking", 3.5, 6,
+                "Walk briskly enough that talking becomes slightly harder, or add some hills",
+                "Wear supportive shoes and stay visible when walking near traffic",
+                "Brisk Walk: 40 minutes at a steady, purposeful pace",
+                "Hill Walk: 30 minutes including inclines or stairs"),
+        CYCLING("Cycling", 7, 12,
+                "Include 3-5 minute efforts at a hard but sustainable cadence",
+                "Wear a helmet and check brakes and tyre pressure before riding",
+                "Endurance Ride: 60 minutes at a steady, moderate effort",
+                "Cadence Drills: 5 x 3 minutes at 95+ rpm with easy spinning between"),
+        SWIMMING("Swimming", 7, 12,
+                "Add short sets of faster lengths with 20-30 seconds rest",
+                "Swim where a lifeguard is present and never swim alone in open water",
+                "Technique Swim: 10 x 50 m focusing on stroke and breathing",
+                "Endurance Swim: 20-30 minutes continuous at an easy pace"),
+        WEIGHT_TRAINING("Weight training", 4, 8,
+                "Shorten rest periods or add a set to the main lifts",
+                "Use controlled form and a spotter for heavy lifts",
+                "Full Body Strength: squats, presses and rows, 3 x 8-10 each",
+                "Mobility Session: 20 minutes of dynamic stretching for the worked muscles"),
+        YOGA("Yoga", 2.5, 4.5,
+                "Try a more dynamic vinyasa flow or hold standing poses longer",
+                "Avoid forcing end-range positions and protect knees and lower back",
+                "Power Yoga: 45 minutes of vinyasa flow",
+                "Restorative Yoga: 30 minutes of slow, supported poses"),
+        STRETCHING("Stretching", 2, 3.5,
+                "Pair stretching with light movement such as a brisk walk",
+                "Stretch to mild tension only and never bounce",
+                "Dynamic Warm-up: 10 minutes of leg swings, lunges and arm circles",
+                "Mobility Flow: 20 minutes targeting hips, hamstrings and shoulders"),
+        CARDIO("Cardio", 7, 11,
+                "Alternate 1 minute hard with 2 minutes easy to raise intensity",
+                "Build intensity gradually and stop if you feel chest pain",
+                "Interval Cardio: 25 minutes alternating hard and easy minutes",
+                "Steady Cardio: 40 minutes at a moderate, sustainable effort"),
+        OTHER("Workout", 4, 9,
+                "Gradually increase the effort or duration of your sessions",
+                "Use proper technique and appropriate equipment for the activity",
+                "Active Recovery: 30 minutes of easy walking or cycling",
+                "Strength Session: 30 minutes of bodyweight exercises");
+
+        private final String label;
+        private final double lowCaloriesPerMinute;
+        private final double highCaloriesPerMinute;
+        private final String intensityTip;
+        private final String safetyTip;
+        private final String[] suggestions;
+
+        Profile(String label, double lowCaloriesPerMinute, double highCaloriesPerMinute,
+                String intensityTip, String safetyTip, String... suggestions) {
+            this.label = label;
+            this.lowCaloriesPerMinute = lowCaloriesPerMinute;
+            this.highCaloriesPerMinute = highCaloriesPerMinute;
+            this.intensityTip = intensityTip;
+            this.safetyTip = safetyTip;
+            this.suggestions = suggestions;
+        }
+
+        static Profile of(String type) {
+            if (type == null) {
+                return OTHER;
+            }
+            return switch (type.trim().toLowerCase(Locale.ROOT)) {
+                case "running", "run" -> RUNNING;
+                case "walking", "walk" -> WALKING;
+                case "cycling", "bike", "biking" -> CYCLING;
+                case "swimming", "swim" -> SWIMMING;
+                case "weight_training", "weighttraining", "weights" -> WEIGHT_TRAINING;
+                case "yoga" -> YOGA;
+                case "stretching", "stretch" -> STRETCHING;
+                case "cardio" -> CARDIO;
+                default -> OTHER;
+            };
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ActivityMessageListener}. Returning a Mono
+ * switches the container to manual acks, so a message is acknowledged only
+ * once its recommendation is stored and the consumer thread is released as
+ * soon as the pipeline is subscribed. Failures the
+ * {@link ActivityRedeliveryPolicy} does not requeue are rethrown as
+ * {@link AmqpRejectAndDontRequeueException} so the container dead-letters them.
+ */
+@Service
+@Slf4j
+@AllArgsConstructor
+@ConditionalOnProperty(name = "ai.pipeline.mode", havingValue = "reactive")
+public class ReactiveActivityMessageListener {
+    private RecommendationPipeline recommendationPipeline;
+    private ActivityConsumerMetrics consumerMetrics;
+
+    @RabbitListener(id = ActivityConsumerBackPressure.LISTENER_ID, queues = "${rabbitmq.queue.name}",
+            containerFactory = "activityListenerContainerFactory")
+    public Mono<Void> processActivity(Activity activity){
+        log.info("Received activity for processing: {}", activity.getId());
+        consumerMetrics.received(activity);
+        return recommendationPipeline.processAsync(activity)
+                .doOnError(e -> log.error("Failed to process activity {}", activity.getId(), e))
+                .onErrorMap(e -> !ActivityRedeliveryPolicy.shouldRequeue(e),
+                        e -> new AmqpRejectAndDontRequeueException("Not retrying activity " + activity.getId(), e))
+                .doFinally(signal -> consumerMetrics.completed())
+                .then();
+    }
+}
@@ -0,0 +1,167 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Micro-batching stage in front of {@link AiActivityService}. Activities are
+ * collected until ai.batch.max-size is reached or ai.batch.linger has passed
+ * since the first one arrived, then analyzed with one LLM request. Each caller
+ * gets its own Recommendation back. With batching disabled every activity goes
+ * straight to AiActivityService.
+ */
+@Service
+@Slf4j
+public class RecommendationBatcher {
+    private final AiActivityService aiService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final Duration linger;
+    private final DistributionSummary batchSizes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService lingerTimer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("recommendation-batch-timer").daemon().factory());
+    private final ExecutorService dispatcher = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("recommendation-batch-", 0).factory());
+
+    private List<PendingActivity> buffer = new ArrayList<>();
+    private long generation;
+
+    public RecommendationBatcher(AiActivityService aiService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ai.batch.enabled:false}") boolean enabled,
+                                 @Value("${ai.batch.max-size:8}") int maxBatchSize,
+                                 @Value("${ai.batch.linger:200ms}") Duration linger) {
+        this.aiService = aiService;
+        this.enabled = enabled && maxBatchSize > 1;
+        this.maxBatchSize = maxBatchSize;
+        this.linger = linger;
+        this.batchSizes = DistributionSummary.builder("ai.batch.size")
+                .description("Activities analyzed per LLM request")
+                .register(meterRegistry);
+    }
+
+    public Recommendation generateRecommendation(Activity activity) {
+        if (!enabled) {
+            return aiService.generateRecommendation(activity);
+        }
+        try {
+            return submit(activity).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public Mono<Recommendation> generateRecommendationAsync(Activity activity) {
+        if (!enabled) {
+            return aiService.generateRecommendationAsync(activity);
+        }
+        return Mono.fromFuture(() -> submit(activity));
+    }
+
+    private CompletableFuture<Recommendation> submit(Activity activity) {
+        PendingActivity pending = new PendingActivity(activity, new CompletableFuture<>());
+        List<PendingActivity> fullBatch = null;
+        lock.lock();
+        try {
+            buffer.add(pending);
+            if (buffer.size() >= maxBatchSize) {
+                fullBatch = drain();
+            } else if (buffer.size() == 1) {
+                long scheduledGeneration = generation;
+                lingerTimer.schedule(() -> flushIfStill(scheduledGeneration), linger.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        }
+        return pending.result();
+    }
+
+    private void flushIfStill(long scheduledGeneration) {
+        List<PendingActivity> batch = null;
+        lock.lock();
+        try {
+            if (generation == scheduledGeneration && !buffer.isEmpty()) {
+                batch = drain();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private List<PendingActivity> drain() {
+        List<PendingActivity> batch = buffer;
+        buffer = new ArrayList<>();
+        generation++;
+        return batch;
+    }
+
+    private void dispatch(List<PendingActivity> batch) {
+        batchSizes.record(batch.size());
+        dispatcher.execute(() -> {
+            try {
+                List<Activity> activities = batch.stream().map(PendingActivity::activity).toList();
+                Map<String, Recommendation> results = aiService.generateRecommendations(activities);
+                for (PendingActivity pending : batch) {
+                    Recommendation recommendation = results.get(pending.activity().getId());
+                    if (recommendation != null) {
+                        pending.result().complete(recommendation);
+                    } else {
+                        pending.result().completeExceptionally(new IllegalStateException(
+                                "No recommendation produced for activity " + pending.activity().getId()));
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Recommendation batch of {} activities failed", batch.size(), e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<PendingActivity> remaining;
+        lock.lock();
+        try {
+            remaining = drain();
+        } finally {
+            lock.unlock();
+        }
+        if (!remaining.isEmpty()) {
+            dispatch(remaining);
+        }
+        lingerTimer.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    private record PendingActivity(Activity activity, CompletableFuture<Recommendation> result) {
+    }
+}
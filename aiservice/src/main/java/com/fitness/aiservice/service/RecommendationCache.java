@@ -0,0 +1,195 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.CachedAnalysis;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.CachedAnalysisRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Content-addressed cache of parsed LLM analyses, keyed by a SHA-256 of the
+ * normalized prompt. A bounded in-memory tier sits in front of the
+ * recommendation_cache collection, whose entries expire through a TTL index.
+ */
+@Service
+@Slf4j
+public class RecommendationCache {
+    private final CachedAnalysisRepository cachedAnalysisRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Cache<String, CachedAnalysis> localCache;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Counter storeHits;
+    private final Counter storeMisses;
+
+    public RecommendationCache(CachedAnalysisRepository cachedAnalysisRepository,
+                               MongoTemplate mongoTemplate,
+                               ReactiveMongoTemplate reactiveMongoTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${ai.cache.enabled:true}") boolean enabled,
+                               @Value("${ai.cache.max-entries:10000}") long maxEntries,
+                               @Value("${ai.cache.local-ttl:1h}") Duration localTtl,
+                               @Value("${ai.cache.ttl:7d}") Duration ttl) {
+        this.cachedAnalysisRepository = cachedAnalysisRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "recommendationPromptCache");
+        this.storeHits = Counter.builder("ai.recommendation.cache.store")
+                .tag("result", "hit")
+                .description("Lookups answered by the persistent cache tier")
+                .register(meterRegistry);
+        this.storeMisses = Counter.builder("ai.recommendation.cache.store")
+                .tag("result", "miss")
+                .description("Lookups that missed both cache tiers")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureExpiryIndex() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            mongoTemplate.indexOps(CachedAnalysis.class)
+                    .createIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl));
+        } catch (Exception e) {
+            log.warn("Unable to create TTL index on recommendation_cache: {}", e.getMessage());
+        }
+    }
+
+    public String keyFor(String prompt) {
+        String normalized = prompt.strip().replaceAll("\\s+", " ").toLowerCase();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Optional<CachedAnalysis> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedAnalysis cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try {
+            Optional<CachedAnalysis> stored = cachedAnalysisRepository.findById(key);
+            recordStoreLookup(stored.orElse(null));
+            return stored;
+        } catch (Exception e) {
+            log.warn("Recommendation cache lookup failed, calling the LLM: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public Mono<CachedAnalysis> getAsync(String key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        CachedAnalysis cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveMongoTemplate.findById(key, CachedAnalysis.class)
+                .doOnNext(this::recordStoreLookup)
+                .switchIfEmpty(Mono.fromRunnable(() -> recordStoreLookup(null)))
+                .onErrorResume(e -> {
+                    log.warn("Recommendation cache lookup failed, calling the LLM: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    public void put(String key, Recommendation recommendation) {
+        if (!enabled) {
+            return;
+        }
+        CachedAnalysis analysis = toCachedAnalysis(key, recommendation);
+        localCache.put(key, analysis);
+        try {
+            cachedAnalysisRepository.save(analysis);
+        } catch (Exception e) {
+            log.warn("Unable to persist recommendation cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    public Mono<Void> putAsync(String key, Recommendation recommendation) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        CachedAnalysis analysis = toCachedAnalysis(key, recommendation);
+        localCache.put(key, analysis);
+        return reactiveMongoTemplate.save(analysis)
+                .onErrorResume(e -> {
+                    log.warn("Unable to persist recommendation cache entry {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    public long invalidateAll() {
+        localCache.invalidateAll();
+        long stored = mongoTemplate.remove(new Query(), CachedAnalysis.class).getDeletedCount();
+        log.info("Invalidated recommendation cache ({} stored entries)", stored);
+        return stored;
+    }
+
+    public boolean invalidate(String key) {
+        localCache.invalidate(key);
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(key)), CachedAnalysis.class)
+                .getDeletedCount() > 0;
+    }
+
+    private void recordStoreLookup(CachedAnalysis stored) {
+        if (stored != null) {
+            storeHits.increment();
+            localCache.put(stored.getPromptHash(), stored);
+        } else {
+            storeMisses.increment();
+        }
+    }
+
+    private CachedAnalysis toCachedAnalysis(String key, Recommendation recommendation) {
+        return CachedAnalysis.builder()
+                .promptHash(key)
+                .recommendation(recommendation.getRecommendation())
+                .improvements(recommendation.getImprovements())
+                .suggestions(recommendation.getSuggestions())
+                .safety(recommendation.getSafety())
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationWrittenEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tells readers such as the gateway's response cache which recommendations
+ * were just written. Best effort: a lost event only leaves a cached entry
+ * until its TTL.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RecommendationEventPublisher {
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.recommendation-events.exchange:recommendation.written}")
+    private String exchange;
+
+    public void written(List<Recommendation> recommendations) {
+        if (recommendations.isEmpty()) {
+            return;
+        }
+        Set<String> activityIds = new LinkedHashSet<>();
+        Set<String> userIds = new LinkedHashSet<>();
+        for (Recommendation recommendation : recommendations) {
+            activityIds.add(recommendation.getActivityId());
+            if (recommendation.getUserId() != null) {
+                userIds.add(recommendation.getUserId());
+            }
+        }
+        try {
+            rabbitTemplate.convertAndSend(exchange, "", new RecommendationWrittenEvent(activityIds, userIds));
+        } catch (Exception e) {
+            log.warn("Unable to publish recommendation written event for {} activities: {}", activityIds.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates and stores the recommendation for one activity. When the LLM
+ * misses ai.hedge.latency-budget, the local rule engine's answer is stored
+ * straight away and replaced in place once the LLM answer arrives. Writes go
+ * through {@link RecommendationWriteBuffer}; the returned future completes
+ * once the first answer for the activity has been flushed.
+ * <p>
+ * A hedged call holds one of ai.hedge.max-pending-upgrades slots until the
+ * LLM answers, also after its message was acked. Without a free slot, or
+ * while the gemini circuit breaker is not closed, the activity waits for the
+ * LLM like an unhedged one, so a slow Gemini still pauses consumption instead
+ * of draining the queue into rule engine answers. An LLM call rejected by
+ * the gemini bulkhead is answered by the rule engine rather than failed,
+ * since requeueing it would only bring it straight back.
+ */
+@Service
+@Slf4j
+public class RecommendationPipeline {
+    private final RecommendationBatcher recommendationBatcher;
+    private final LocalRecommendationEngine localRecommendationEngine;
+    private final RecommendationWriteBuffer recommendationWriteBuffer;
+    private final Duration latencyBudget;
+    private final Counter fastPathStored;
+    private final Counter upgradedInPlace;
+    private final Counter hedgeSkipped;
+    private final Counter bulkheadFallbacks;
+    private final Semaphore pendingUpgrades;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService llmExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("recommendation-llm-", 0).factory());
+
+    public RecommendationPipeline(RecommendationBatcher recommendationBatcher,
+                                  LocalRecommendationEngine localRecommendationEngine,
+                                  RecommendationWriteBuffer recommendationWriteBuffer,
+                                  MeterRegistry meterRegistry,
+                                  CircuitBreakerRegistry circuitBreakerRegistry,
+                                  @Value("${ai.hedge.latency-budget:0ms}") Duration latencyBudget,
+                                  @Value("${ai.hedge.max-pending-upgrades:16}") int maxPendingUpgrades) {
+        this.recommendationBatcher = recommendationBatcher;
+        this.localRecommendationEngine = localRecommendationEngine;
+        this.recommendationWriteBuffer = recommendationWriteBuffer;
+        this.latencyBudget = latencyBudget;
+        this.pendingUpgrades = new Semaphore(maxPendingUpgrades);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(GeminiService.RESILIENCE_INSTANCE);
+        this.fastPathStored = Counter.builder("ai.hedge.fast_path")
+                .description("Recommendations first stored from the local rule engine")
+                .register(meterRegistry);
+        this.upgradedInPlace = Counter.builder("ai.hedge.upgrades")
+                .description("Rule engine recommendations later replaced by the LLM answer")
+                .register(meterRegistry);
+        this.bulkheadFallbacks = Counter.builder("ai.llm.bulkhead_fallbacks")
+                .description("Activities answered by the rule engine because the gemini bulkhead was full")
+                .register(meterRegistry);
+        this.hedgeSkipped = Counter.builder("ai.hedge.skipped")
+                .description("Activities answered without a hedge because no upgrade slot was free or the breaker was not closed")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Recommendation> process(Activity activity) {
+        if (!tryStartHedge()) {
+            return recommendationWriteBuffer.write(generate(activity));
+        }
+        CompletableFuture<Recommendation> llmAnswer = CompletableFuture.supplyAsync(
+                () -> generate(activity), llmExecutor);
+        llmAnswer.whenComplete((recommendation, error) -> pendingUpgrades.release());
+        try {
+            return recommendationWriteBuffer.write(llmAnswer.get(latencyBudget.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            CompletableFuture<Recommendation> stored = recommendationWriteBuffer.write(localRecommendationEngine.recommend(activity));
+            fastPathStored.increment();
+            llmAnswer.whenComplete((recommendation, error) -> {
+                if (error != null) {
+                    log.warn("LLM answer for activity {} failed after fast path: {}", activity.getId(), error.getMessage());
+                } else if (isUpgrade(recommendation)) {
+                    recommendationWriteBuffer.write(recommendation);
+                    upgradedInPlace.increment();
+                }
+            });
+            return stored;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the LLM", e);
+        }
+    }
+
+    public Mono<Recommendation> processAsync(Activity activity) {
+        if (!tryStartHedge()) {
+            return generateAsync(activity)
+                    .flatMap(this::store);
+        }
+        CompletableFuture<Recommendation> llmAnswer = generateAsync(activity).toFuture();
+        llmAnswer.whenComplete((recommendation, error) -> pendingUpgrades.release());
+        return Mono.fromFuture(llmAnswer, true)
+                .timeout(latencyBudget)
+                .flatMap(this::store)
+                .onErrorResume(TimeoutException.class, e -> store(localRecommendationEngine.recommend(activity))
+                        .doOnNext(stored -> {
+                            fastPathStored.increment();
+                            Mono.fromFuture(llmAnswer)
+                                    .filter(this::isUpgrade)
+                                    .flatMap(this::store)
+                                    .subscribe(upgraded -> upgradedInPlace.increment(),
+                                            error -> log.warn("LLM answer for activity {} failed after fast path: {}",
+                                                    activity.getId(), error.getMessage()));
+                        }));
+    }
+
+    private Recommendation generate(Activity activity) {
+        try {
+            return recommendationBatcher.generateRecommendation(activity);
+        } catch (RuntimeException e) {
+            if (!isBulkheadFull(e)) {
+                throw e;
+            }
+            bulkheadFallbacks.increment();
+            return localRecommendationEngine.recommend(activity);
+        }
+    }
+
+    private Mono<Recommendation> generateAsync(Activity activity) {
+        return recommendationBatcher.generateRecommendationAsync(activity)
+                .onErrorResume(RecommendationPipeline::isBulkheadFull, e -> {
+                    bulkheadFallbacks.increment();
+                    return Mono.fromSupplier(() -> localRecommendationEngine.recommend(activity));
+                });
+    }
+
+    private static boolean isBulkheadFull(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BulkheadFullException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Mono<Recommendation> store(Recommendation recommendation) {
+        return Mono.fromFuture(() -> recommendationWriteBuffer.write(recommendation));
+    }
+
+    /**
+     * Takes an upgrade slot when the activity may be hedged; the caller
+     * releases it once the LLM answer completes.
+     */
+    private boolean tryStartHedge() {
+        if (!latencyBudget.isPositive()) {
+            return false;
+        }
+        if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED || !pendingUpgrades.tryAcquire()) {
+            hedgeSkipped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isUpgrade(Recommendation recommendation) {
+        return !LocalRecommendationEngine.SOURCE.equals(recommendation.getSource());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        llmExecutor.shutdown();
+    }
+}
@@ -1,25 +1,125 @@
 package com.fitness.aiservice.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationPage;
+import com.fitness.aiservice.model.RecommendationSummary;
 import com.fitness.aiservice.repository.RecommendationRepository;
-import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
-@AllArgsConstructor
+@Slf4j
+@RequiredArgsConstructor
 public class RecommendationService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int EXPORT_FLUSH_EVERY = 100;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id"));
+
     private final RecommendationRepository recommendationRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureHistoryIndex() {
+        try {
+            mongoTemplate.indexOps(Recommendation.class).createIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC));
+        } catch (Exception e) {
+            log.warn("Unable to create (userId, createdAt) index on recommendations: {}", e.getMessage());
+        }
+    }
 
-    public List<Recommendation> getUserRecommendation(String userId) {
-        return recommendationRepository.findByUserId(userId);
+    /**
+     * One page of a user's recommendations, newest first. The cursor is the
+     * (createdAt, id) of the last item of the previous page, so each page is an
+     * index range scan no matter how deep the client has paged.
+     */
+    public RecommendationPage<RecommendationSummary> getUserRecommendationPage(String userId, String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        Query query = historyQuery(userId, cursor).limit(pageSize + 1);
+        query.fields().include("activityId", "activityType", "source", "createdAt");
+        List<RecommendationSummary> items = mongoTemplate.find(query, RecommendationSummary.class,
+                mongoTemplate.getCollectionName(Recommendation.class));
+        if (items.size() <= pageSize) {
+            return new RecommendationPage<>(items, null);
+        }
+        List<RecommendationSummary> page = items.subList(0, pageSize);
+        RecommendationSummary last = page.get(pageSize - 1);
+        return new RecommendationPage<>(page, encodeCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    /**
+     * Writes all of a user's recommendations as newline-delimited JSON while
+     * the Mongo cursor yields them, so memory use does not grow with history.
+     */
+    public void exportUserRecommendations(String userId, OutputStream out) throws IOException {
+        try (Stream<Recommendation> recommendations = mongoTemplate.stream(historyQuery(userId, null), Recommendation.class)) {
+            int written = 0;
+            for (Recommendation recommendation : (Iterable<Recommendation>) recommendations::iterator) {
+                out.write(objectMapper.writeValueAsBytes(recommendation));
+                out.write('\n');
+                if (++written % EXPORT_FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
     }
 
     public Recommendation getActivityRecommendation(String activityId) {
         return recommendationRepository.findByActivityId(activityId)
                 .orElseThrow(() -> new RuntimeException("No recommendation found with this activity: " + activityId));
     }
+
+    private Query historyQuery(String userId, String cursor) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            LocalDateTime createdAt = LocalDateTime.parse(position[0]);
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(createdAt),
+                    Criteria.where("createdAt").is(createdAt).and("id").lt(position[1]));
+        }
+        return Query.query(criteria).with(NEWEST_FIRST);
+    }
+
+    private static String encodeCursor(LocalDateTime createdAt, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (position.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            LocalDateTime.parse(position[0]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for recommendations. Writes are collected until
+ * ai.persistence.batch-size is reached or ai.persistence.flush-interval has
+ * passed, then stored with one unordered bulk upsert keyed by activityId. The
+ * returned future completes only after the bulk write containing the
+ * recommendation was acknowledged, so callers can defer their broker ack.
+ * A later write for the same activity replaces a pending one in the buffer,
+ * and flushes run one at a time in the order their batches were drained, so
+ * an older write never lands after a newer. With ai.pipeline.mode=reactive
+ * the bulk write goes through {@link ReactiveMongoTemplate} and no thread
+ * waits for it; otherwise a single flusher thread runs it on {@link MongoTemplate}.
+ * activityId is uniquely indexed, so two instances upserting the same
+ * activity cannot both insert; the loser's duplicate-key error means the
+ * recommendation is already stored and is treated as written.
+ * Stored recommendations are announced through {@link RecommendationEventPublisher}.
+ */
+@Service
+@Slf4j
+public class RecommendationWriteBuffer {
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final boolean reactive;
+    private final RecommendationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final DistributionSummary flushSizes;
+    private final Timer flushLatency;
+    private final Counter flushFailures;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("recommendation-flush-timer").daemon().factory());
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("recommendation-flush").factory());
+
+    private Map<String, PendingWrite> buffer = new LinkedHashMap<>();
+    private long generation;
+    private CompletableFuture<Void> lastReactiveFlush = CompletableFuture.completedFuture(null);
+
+    public RecommendationWriteBuffer(MongoTemplate mongoTemplate,
+                                     ReactiveMongoTemplate reactiveMongoTemplate,
+                                     RecommendationEventPublisher eventPublisher,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${ai.pipeline.mode:blocking}") String pipelineMode,
+                                     @Value("${ai.persistence.batch-size:100}") int batchSize,
+                                     @Value("${ai.persistence.flush-interval:50ms}") Duration flushInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reactive = "reactive".equals(pipelineMode);
+        this.eventPublisher = eventPublisher;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+        this.flushSizes = DistributionSummary.builder("ai.persistence.flush.size")
+                .description("Recommendations written per bulk flush")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("ai.persistence.flush.latency")
+                .description("Time taken by one bulk flush")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("ai.persistence.flush.failures")
+                .description("Recommendations whose bulk write failed")
+                .register(meterRegistry);
+        Gauge.builder("ai.persistence.pending", this, RecommendationWriteBuffer::pending)
+                .description("Recommendations waiting for the next flush")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureActivityIdIndex() {
+        try {
+            mongoTemplate.indexOps(Recommendation.class)
+                    .createIndex(new Index().on("activityId", Sort.Direction.ASC).unique());
+        } catch (Exception e) {
+            log.warn("Unable to create activityId index on recommendations: {}", e.getMessage());
+        }
+    }
+
+    public CompletableFuture<Recommendation> write(Recommendation recommendation) {
+        CompletableFuture<Recommendation> written = new CompletableFuture<>();
+        lock.lock();
+        try {
+            PendingWrite superseded = buffer.get(recommendation.getActivityId());
+            if (superseded != null) {
+                superseded.waiters().add(written);
+                buffer.put(recommendation.getActivityId(), new PendingWrite(recommendation, superseded.waiters()));
+            } else {
+                List<CompletableFuture<Recommendation>> waiters = new ArrayList<>(1);
+                waiters.add(written);
+                buffer.put(recommendation.getActivityId(), new PendingWrite(recommendation, waiters));
+            }
+            if (buffer.size() >= batchSize) {
+                schedule(drain());
+            } else if (buffer.size() == 1 && superseded == null) {
+                long scheduledGeneration = generation;
+                flushTimer.schedule(() -> flushIfStill(scheduledGeneration), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return written;
+    }
+
+    private void flushIfStill(long scheduledGeneration) {
+        lock.lock();
+        try {
+            if (generation == scheduledGeneration && !buffer.isEmpty()) {
+                schedule(drain());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, PendingWrite> drain() {
+        Map<String, PendingWrite> batch = buffer;
+        buffer = new LinkedHashMap<>();
+        generation++;
+        return batch;
+    }
+
+    /**
+     * Queues a drained batch behind the flushes before it. Called with the
+     * lock held, so batches are flushed in the order they were drained.
+     */
+    private void schedule(Map<String, PendingWrite> batch) {
+        if (reactive) {
+            lastReactiveFlush = lastReactiveFlush.thenCompose(ignored -> flushReactive(batch));
+        } else {
+            flusher.execute(() -> flush(batch));
+        }
+    }
+
+    private void flush(Map<String, PendingWrite> batch) {
+        List<PendingWrite> writes = new ArrayList<>(batch.values());
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class);
+        for (PendingWrite write : writes) {
+            operations.replaceOne(byActivityId(write), write.recommendation(), FindAndReplaceOptions.options().upsert());
+        }
+        flushSizes.record(writes.size());
+        Timer.Sample sample = Timer.start();
+        try {
+            operations.execute();
+            flushed(writes, null, sample);
+        } catch (Exception e) {
+            flushed(writes, e, sample);
+        }
+    }
+
+    private CompletableFuture<Void> flushReactive(Map<String, PendingWrite> batch) {
+        List<PendingWrite> writes = new ArrayList<>(batch.values());
+        Timer.Sample sample = Timer.start();
+        try {
+            ReactiveBulkOperations operations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class);
+            for (PendingWrite write : writes) {
+                operations.replaceOne(byActivityId(write), write.recommendation(), FindAndReplaceOptions.options().upsert());
+            }
+            flushSizes.record(writes.size());
+            return operations.execute().toFuture().handle((result, error) -> {
+                flushed(writes, error, sample);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            flushed(writes, e, sample);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void flushed(List<PendingWrite> writes, Throwable error, Timer.Sample sample) {
+        sample.stop(flushLatency);
+        if (error == null) {
+            writes.forEach(PendingWrite::complete);
+            announce(writes.stream().map(PendingWrite::recommendation).toList());
+            return;
+        }
+        List<BulkWriteError> writeErrors = writeErrors(error);
+        if (writeErrors == null) {
+            log.error("Bulk flush of {} recommendations failed", writes.size(), error);
+            flushFailures.increment(writes.size());
+            writes.forEach(write -> write.fail(error));
+            return;
+        }
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError writeError : writeErrors) {
+            if (writeError.getCode() != DUPLICATE_KEY) {
+                failed.add(writeError.getIndex());
+            }
+        }
+        if (!failed.isEmpty()) {
+            log.error("Bulk flush stored {} of {} recommendations", writes.size() - failed.size(), writes.size(), error);
+        }
+        List<Recommendation> stored = new ArrayList<>(writes.size() - failed.size());
+        for (int i = 0; i < writes.size(); i++) {
+            if (failed.contains(i)) {
+                flushFailures.increment();
+                writes.get(i).fail(error);
+            } else {
+                writes.get(i).complete();
+                stored.add(writes.get(i).recommendation());
+            }
+        }
+        announce(stored);
+    }
+
+    private void announce(List<Recommendation> stored) {
+        if (reactive) {
+            // publishing blocks on the broker, so keep it off the Mongo driver's threads
+            flusher.execute(() -> eventPublisher.written(stored));
+        } else {
+            eventPublisher.written(stored);
+        }
+    }
+
+    /**
+     * The per-item errors of a partially failed bulk write, as raised by
+     * either template, or null when the whole write failed.
+     */
+    private static List<BulkWriteError> writeErrors(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BulkOperationException bulkFailure) {
+                return bulkFailure.getErrors();
+            }
+            if (cause instanceof MongoBulkWriteException bulkFailure) {
+                return bulkFailure.getWriteErrors();
+            }
+        }
+        return null;
+    }
+
+    private static Query byActivityId(PendingWrite write) {
+        return Query.query(Criteria.where("activityId").is(write.recommendation().getActivityId()));
+    }
+
+    private int pending() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        CompletableFuture<Void> reactiveFlushes;
+        lock.lock();
+        try {
+            Map<String, PendingWrite> remaining = drain();
+            if (!remaining.isEmpty()) {
+                schedule(remaining);
+            }
+            reactiveFlushes = lastReactiveFlush;
+        } finally {
+            lock.unlock();
+        }
+        flushTimer.shutdownNow();
+        try {
+            reactiveFlushes.get(10, TimeUnit.SECONDS);
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Recommendation flushes did not finish before shutdown: {}", e.toString());
+            flusher.shutdown();
+        }
+    }
+
+    private record PendingWrite(Recommendation recommendation, List<CompletableFuture<Recommendation>> waiters) {
+        void complete() {
+            waiters.forEach(waiter -> waiter.complete(recommendation));
+        }
+
+        void fail(Throwable error) {
+            waiters.forEach(waiter -> waiter.completeExceptionally(error));
+        }
+    }
+}
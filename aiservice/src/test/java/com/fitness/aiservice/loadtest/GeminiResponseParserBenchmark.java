@@ -0,0 +1,136 @@
+package com.fitness.aiservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.aiservice.service.GeminiResponseParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single-threaded parse throughput and allocation per parse of a ~1 KB
+ * Gemini-shaped envelope, for {@link GeminiResponseParser} against the tree
+ * based path it replaced (a new ObjectMapper per response, two readTree
+ * passes and regex fence stripping, kept below as {@link #treeParse}). Each
+ * round runs after a warm-up of the same length; allocation is read from the
+ * thread's allocated-bytes counter.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.aiservice.loadtest.GeminiResponseParserBenchmark -Dexec.args="200000 3"
+ * </pre>
+ */
+public class GeminiResponseParserBenchmark {
+    private static final String ANALYSIS = """
+            ```json
+            {
+              "analysis": {
+                "overall": "A consistent effort with a strong finish over the last kilometre.",
+                "pace": "Even splits around 5:40 per km, slightly faster on the final segment.",
+                "heartRate": "Mostly zone 3 with a short spike into zone 4 on the climb.",
+                "caloriesBurned": "About 450 kcal, in line with the duration and intensity."
+              },
+              "improvements": [
+                {"area": "Cadence", "recommendation": "Aim for 170-175 steps per minute to reduce overstriding."},
+                {"area": "Recovery", "recommendation": "Add an easy day between consecutive hard sessions."}
+              ],
+              "suggestions": [
+                {"workout": "Tempo run", "description": "20 minutes at comfortably hard effort after a warm-up."},
+                {"workout": "Strides", "description": "6 x 20 seconds quick and relaxed after easy runs."}
+              ],
+              "safety": ["Warm up for 10 minutes", "Stay hydrated", "Stop if you feel chest pain"]
+            }
+            ```""";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.parseInt(args.length > 0 ? args[0] : "200000");
+        int rounds = Integer.parseInt(args.length > 1 ? args[1] : "3");
+        String envelope = JsonMapper.builder().build().writeValueAsString(Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", ANALYSIS)))))));
+        GeminiResponseParser parser = new GeminiResponseParser();
+
+        if (!treeParse(envelope).equals(streamingParse(parser, envelope))) {
+            throw new IllegalStateException("Parsers disagree:\n" + treeParse(envelope) + "\n" + streamingParse(parser, envelope));
+        }
+        System.out.printf(Locale.ROOT, "envelope %d bytes, %d iterations per round%n", envelope.length(), iterations);
+        System.out.println("path         parses/s   bytes/parse");
+        for (int round = 0; round < rounds; round++) {
+            run("tree", iterations, () -> treeParse(envelope));
+            run("streaming", iterations, () -> streamingParse(parser, envelope));
+        }
+    }
+
+    private static void run(String name, int iterations, ParseCall call) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            call.parse();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += call.parse().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf(Locale.ROOT, "%-10s %10.0f %13.0f%s%n", name, iterations * 1e9 / elapsed,
+                (double) allocated / iterations, sink == 0 ? " (empty)" : "");
+    }
+
+    private static List<String> streamingParse(GeminiResponseParser parser, String envelope) throws Exception {
+        GeminiResponseParser.ParsedAnalysis analysis = parser.parse(envelope);
+        List<String> fields = new ArrayList<>();
+        fields.add(analysis.recommendation());
+        fields.addAll(analysis.improvements());
+        fields.addAll(analysis.suggestions());
+        fields.addAll(analysis.safety());
+        return fields;
+    }
+
+    // the response handling of AiActivityService before GeminiResponseParser
+    private static List<String> treeParse(String envelope) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String text = mapper.readTree(envelope).path("candidates").get(0)
+                .path("content").path("parts").get(0).path("text").asText()
+                .replaceAll("```json\\n", "")
+                .replaceAll("\\n```", "")
+                .trim();
+        JsonNode analysisJson = mapper.readTree(text);
+        JsonNode analysisNode = analysisJson.path("analysis");
+        StringBuilder fullAnalysis = new StringBuilder();
+        for (String[] section : new String[][]{{"overall", "Overall:"}, {"pace", "Pace:"},
+                {"heartRate", "HeartRate:"}, {"caloriesBurned", "CaloriesBurned:"}}) {
+            if (!analysisNode.path(section[0]).isMissingNode()) {
+                fullAnalysis.append(section[1]).append(analysisNode.path(section[0]).asText()).append(":\n\n");
+            }
+        }
+        List<String> fields = new ArrayList<>();
+        fields.add(fullAnalysis.toString().trim());
+        fields.addAll(pairs(analysisJson.path("improvements"), "area", "recommendation", "NO specific Improvements provided: "));
+        fields.addAll(pairs(analysisJson.path("suggestions"), "workout", "description", "No specific Suggestion provided: "));
+        List<String> safety = new ArrayList<>();
+        if (analysisJson.path("safety").isArray()) {
+            analysisJson.path("safety").forEach(item -> safety.add(item.asText()));
+        }
+        fields.addAll(safety.isEmpty() ? Collections.singletonList("Follow General Safety Guidelines") : safety);
+        return fields;
+    }
+
+    private static List<String> pairs(JsonNode node, String first, String second, String fallback) {
+        List<String> values = new ArrayList<>();
+        if (node.isArray()) {
+            node.forEach(item -> values.add(String.format("%s: %s", item.path(first).asText(), item.path(second).asText())));
+        }
+        return values.isEmpty() ? Collections.singletonList(fallback) : values;
+    }
+
+    @FunctionalInterface
+    private interface ParseCall {
+        List<String> parse() throws Exception;
+    }
+}
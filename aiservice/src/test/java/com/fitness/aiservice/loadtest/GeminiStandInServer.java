@@ -0,0 +1,219 @@
+package com.fitness.aiservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Gemini generateContent endpoint. Answers every prompt
+ * with a Gemini-shaped envelope after a log-normally distributed delay, and
+ * injects HTTP errors and malformed model output at configurable rates.
+ * Batch prompts get one array element per activityId they list.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.aiservice.loadtest.GeminiStandInServer \
+ *     -Dexec.args="--port=8089 --latency-median=800ms --latency-p99=4s --error-rate=0.02 --malformed-rate=0.01"
+ * </pre>
+ *
+ * Then start aiservice with
+ * {@code GEMINI_API_URL=http://localhost:8089/v1beta/models/gemini-2.0-flash:generateContent?key=}
+ * and any GEMINI_API_KEY.
+ */
+public class GeminiStandInServer {
+    private static final Pattern BATCH_LINE = Pattern.compile(
+            "- activityId: (\\S+), activity Type: (\\S+), Duration: (\\S+) minutes, Calories Burned: (\\S+),");
+    private static final Pattern SINGLE_TYPE = Pattern.compile("activity Type: (\\S+),");
+    private static final Pattern SINGLE_DURATION = Pattern.compile("Duration: (\\S+) minutes");
+    private static final Pattern SINGLE_CALORIES = Pattern.compile("Calories Burned: (\\S+) minutes");
+    private static final double Z_99 = 2.326;
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+    private final double medianMillis;
+    private final double sigma;
+    private final double errorRate;
+    private final double malformedRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+
+    public GeminiStandInServer(Duration latencyMedian, Duration latencyP99, double errorRate, double malformedRate) {
+        this.medianMillis = Math.max(1, latencyMedian.toMillis());
+        this.sigma = latencyP99.toMillis() > medianMillis ? Math.log(latencyP99.toMillis() / medianMillis) / Z_99 : 0;
+        this.errorRate = errorRate;
+        this.malformedRate = malformedRate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = options(args);
+        int port = Integer.parseInt(options.getOrDefault("port", "8089"));
+        GeminiStandInServer standIn = new GeminiStandInServer(
+                DurationStyle.detectAndParse(options.getOrDefault("latency-median", "800ms")),
+                DurationStyle.detectAndParse(options.getOrDefault("latency-p99", "4s")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0.02")),
+                Double.parseDouble(options.getOrDefault("malformed-rate", "0.01")));
+        standIn.start(port);
+        System.out.printf("Gemini stand-in listening on http://localhost:%d/v1beta/models/gemini-2.0-flash:generateContent?key=%n", port);
+    }
+
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory())
+                .scheduleAtFixedRate(() -> System.out.printf("requests=%d errors=%d malformed=%d%n",
+                        requests.get(), errors.get(), malformed.get()), 10, 10, TimeUnit.SECONDS);
+        return server;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String prompt = promptOf(exchange.getRequestBody());
+            requests.incrementAndGet();
+            Thread.sleep(sampleLatencyMillis());
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                boolean quota = random.nextBoolean();
+                respond(exchange, quota ? 429 : 503, error(quota ? 429 : 503,
+                        quota ? "Resource has been exhausted (e.g. check quota)." : "The model is overloaded. Please try again later.",
+                        quota ? "RESOURCE_EXHAUSTED" : "UNAVAILABLE"));
+                return;
+            }
+
+            String text = prompt.contains("respond with a JSON array") ? batchAnswer(prompt) : singleAnswer(prompt);
+            if (random.nextDouble() < malformedRate) {
+                malformed.incrementAndGet();
+                text = text.substring(0, text.length() / 2);
+            }
+            respond(exchange, 200, envelope("```json\n" + text + "\n```"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long sampleLatencyMillis() {
+        return Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private String promptOf(InputStream body) throws IOException {
+        JsonNode request = mapper.readTree(body);
+        return request.path("contents").path(0).path("parts").path(0).path("text").asText("");
+    }
+
+    private String singleAnswer(String prompt) throws IOException {
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(analysis(null,
+                find(SINGLE_TYPE, prompt), find(SINGLE_DURATION, prompt), find(SINGLE_CALORIES, prompt)));
+    }
+
+    private String batchAnswer(String prompt) throws IOException {
+        ArrayNode answers = mapper.createArrayNode();
+        Matcher line = BATCH_LINE.matcher(prompt);
+        while (line.find()) {
+            answers.add(analysis(line.group(1), line.group(2), line.group(3), line.group(4)));
+        }
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(answers);
+    }
+
+    private ObjectNode analysis(String activityId, String type, String duration, String calories) {
+        String activity = type == null ? "workout" : type.toLowerCase(Locale.ROOT).replace('_', ' ');
+        ObjectNode node = mapper.createObjectNode();
+        if (activityId != null) {
+            node.put("activityId", activityId);
+        }
+        ObjectNode analysis = node.putObject("analysis");
+        analysis.put("overall", "This " + duration + " minute " + activity + " session burning " + calories
+                + " calories shows a solid base level of fitness with room to build endurance.");
+        analysis.put("pace", "Your pace was steady throughout, which suggests good energy management for a session of this length.");
+        analysis.put("heartRate", "Heart rate data indicates you spent most of the session in an aerobic zone, ideal for base building.");
+        analysis.put("caloriesBurned", "Burning " + calories + " calories in " + duration
+                + " minutes is in line with a moderate effort for " + activity + ".");
+        ArrayNode improvements = node.putArray("improvements");
+        improvements.addObject().put("area", "Endurance")
+                .put("recommendation", "Extend one session per week by 10 percent to gradually build aerobic capacity.");
+        improvements.addObject().put("area", "Recovery")
+                .put("recommendation", "Schedule an easy day after harder efforts to let your body adapt.");
+        ArrayNode suggestions = node.putArray("suggestions");
+        suggestions.addObject().put("workout", "Interval Session")
+                .put("description", "Warm up for 10 minutes, then 6 x 2 minutes hard with 2 minutes easy, and cool down.");
+        suggestions.addObject().put("workout", "Long Easy " + capitalize(activity))
+                .put("description", "A relaxed session 20 to 30 percent longer than usual at a conversational effort.");
+        ArrayNode safety = node.putArray("safety");
+        safety.add("Warm up for at least 5-10 minutes before starting");
+        safety.add("Stay hydrated before, during and after exercise");
+        safety.add("Stop and rest if you feel dizzy, faint or unusually short of breath");
+        return node;
+    }
+
+    private String envelope(String text) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        candidate.put("avgLogprobs", -0.1836);
+        ObjectNode usage = root.putObject("usageMetadata");
+        usage.put("promptTokenCount", 310);
+        usage.put("candidatesTokenCount", text.length() / 4);
+        usage.put("totalTokenCount", 310 + text.length() / 4);
+        root.put("modelVersion", "gemini-2.0-flash");
+        return mapper.writeValueAsString(root);
+    }
+
+    private String error(int code, String message, String status) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        root.putObject("error").put("code", code).put("message", message).put("status", status);
+        return mapper.writeValueAsString(root);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String find(Pattern pattern, String prompt) {
+        Matcher matcher = pattern.matcher(prompt);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String capitalize(String text) {
+        return text.isEmpty() ? text : Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,199 @@
+package com.fitness.aiservice.loadtest;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the activity pipeline. Publishes synthetic
+ * activities to the activity exchange at a fixed rate, watches the
+ * recommendations collection for their results and prints throughput, end-to-end
+ * latency percentiles and how many answers came from the rule engine fallback.
+ * Latency is measured from each message's scheduled send time, so a publisher
+ * that falls behind does not hide queueing delay.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.aiservice.loadtest.ThroughputHarness \
+ *     -Dexec.args="--rate=50 --count=3000 --distinct=0"
+ * </pre>
+ *
+ * Options: rate (messages/s), count, distinct (number of distinct activity
+ * shapes, so repeated shapes exercise the prompt cache; 0 makes every activity
+ * unique), rabbit-host, rabbit-port, exchange, routing-key, mongo-uri,
+ * poll-interval-ms and drain-timeout-s.
+ */
+public class ThroughputHarness {
+    private static final String[] TYPES = {"RUNNING", "WALKING", "CYCLING", "SWIMMING", "WEIGHT_TRAINING", "YOGA", "CARDIO"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = GeminiStandInServer.options(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "50"));
+        int count = Integer.parseInt(options.getOrDefault("count", "3000"));
+        int distinct = Integer.parseInt(options.getOrDefault("distinct", "0"));
+        long pollIntervalMillis = Long.parseLong(options.getOrDefault("poll-interval-ms", "20"));
+        long drainTimeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("drain-timeout-s", "120")));
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(
+                options.getOrDefault("rabbit-host", "localhost"),
+                Integer.parseInt(options.getOrDefault("rabbit-port", "5672")));
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        String exchange = options.getOrDefault("exchange", "fitness.exchange");
+        String routingKey = options.getOrDefault("routing-key", "activity.tracking");
+        JsonMapper mapper = JsonMapper.builder().build();
+
+        try (MongoClient mongoClient = MongoClients.create(
+                options.getOrDefault("mongo-uri", "mongodb://localhost:27017/fitnessrecommendation"))) {
+            String database = options.getOrDefault("mongo-database", "fitnessrecommendation");
+            MongoCollection<Document> recommendations = mongoClient.getDatabase(database).getCollection("recommendations");
+
+            Map<String, Long> scheduledAt = new ConcurrentHashMap<>();
+            Map<String, Long> latencies = new ConcurrentHashMap<>();
+            Map<String, String> firstSource = new ConcurrentHashMap<>();
+            Thread poller = Thread.ofPlatform().name("harness-poller").start(() ->
+                    poll(recommendations, scheduledAt, latencies, firstSource, pollIntervalMillis));
+
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            long start = System.nanoTime();
+            long lateSends = 0;
+            for (int i = 0; i < count; i++) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (wait < -intervalNanos) {
+                    lateSends++;
+                }
+                String activityId = new ObjectId().toHexString();
+                scheduledAt.put(activityId, due);
+                rabbitTemplate.send(exchange, routingKey, activityMessage(mapper, activityId, i, distinct));
+            }
+            long publishedNanos = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "published %d activities in %.1fs (%d sent late)%n",
+                    count, publishedNanos / 1e9, lateSends);
+
+            long deadline = System.nanoTime() + drainTimeoutNanos;
+            while (latencies.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(250);
+            }
+            poller.interrupt();
+            poller.join();
+
+            report(recommendations, scheduledAt, latencies, firstSource, start, count);
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static void poll(MongoCollection<Document> recommendations, Map<String, Long> scheduledAt,
+                             Map<String, Long> latencies, Map<String, String> firstSource, long pollIntervalMillis) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> pending = new ArrayList<>();
+            for (String activityId : scheduledAt.keySet()) {
+                if (!latencies.containsKey(activityId)) {
+                    pending.add(activityId);
+                    if (pending.size() == 1000) {
+                        break;
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                for (Document found : recommendations.find(Filters.in("activityId", pending))
+                        .projection(Projections.include("activityId", "source"))) {
+                    String activityId = found.getString("activityId");
+                    if (latencies.putIfAbsent(activityId, System.nanoTime() - scheduledAt.get(activityId)) == null) {
+                        firstSource.put(activityId, String.valueOf(found.getString("source")));
+                    }
+                }
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void report(MongoCollection<Document> recommendations, Map<String, Long> scheduledAt,
+                               Map<String, Long> latencies, Map<String, String> firstSource, long start, int count) {
+        long[] sorted = latencies.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        int completed = sorted.length;
+        long lastCompletion = latencies.entrySet().stream()
+                .mapToLong(entry -> scheduledAt.get(entry.getKey()) + entry.getValue())
+                .max().orElse(start);
+
+        Map<String, Integer> finalSource = new TreeMap<>();
+        List<String> ids = new ArrayList<>(latencies.keySet());
+        for (int from = 0; from < ids.size(); from += 1000) {
+            for (Document found : recommendations.find(Filters.in("activityId", ids.subList(from, Math.min(ids.size(), from + 1000))))
+                    .projection(Projections.include("source"))) {
+                finalSource.merge(String.valueOf(found.getString("source")), 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> servedFirst = new TreeMap<>();
+        firstSource.values().forEach(source -> servedFirst.merge(source, 1, Integer::sum));
+
+        System.out.printf(Locale.ROOT, "completed   %d / %d%n", completed, count);
+        System.out.printf(Locale.ROOT, "throughput  %.1f recommendations/s%n",
+                completed / Math.max(1e-9, (lastCompletion - start) / 1e9));
+        System.out.printf(Locale.ROOT, "latency     p50=%s p90=%s p99=%s max=%s%n",
+                millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 1.0));
+        System.out.printf(Locale.ROOT, "first seen  %s  fallback rate %.2f%%%n",
+                servedFirst, percent(servedFirst.getOrDefault("RULES", 0), completed));
+        System.out.printf(Locale.ROOT, "final       %s  fallback rate %.2f%%%n",
+                finalSource, percent(finalSource.getOrDefault("RULES", 0), completed));
+    }
+
+    private static Message activityMessage(JsonMapper mapper, String activityId, int sequence, int distinct) {
+        int shape = distinct > 0 ? sequence % distinct : sequence;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int duration = 15 + shape % 76;
+        ObjectNode activity = mapper.createObjectNode();
+        activity.put("id", activityId);
+        activity.put("userId", "load-user-" + (sequence % 500));
+        activity.put("type", TYPES[shape % TYPES.length]);
+        activity.put("duration", duration);
+        activity.put("caloriesBurned", duration * (4 + shape % 9));
+        activity.put("startTime", LocalDateTime.now().minusMinutes(duration).toString());
+        ObjectNode metrics = activity.putObject("additionalMetrics");
+        metrics.put("heartRate", 110 + shape % 60);
+        metrics.put("distance", distinct > 0 ? 2 + shape % 15 : 2 + random.nextInt(1500) / 100.0);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        return new Message(activity.toString().getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private static String millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return "n/a";
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return String.format(Locale.ROOT, "%.0fms", sorted[Math.max(0, index)] / 1e6);
+    }
+
+    private static double percent(int part, int total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+}
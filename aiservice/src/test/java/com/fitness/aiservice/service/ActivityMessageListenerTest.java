@@ -0,0 +1,104 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.rabbitmq.client.Channel;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActivityMessageListenerTest {
+    private static final long DELIVERY_TAG = 7;
+
+    private final RecommendationPipeline pipeline = mock(RecommendationPipeline.class);
+    private final Channel channel = mock(Channel.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActivityMessageListener listener = new ActivityMessageListener(pipeline, new ActivityConsumerMetrics(meterRegistry));
+
+    @Test
+    void activityStaysInFlightUntilItsRecommendationIsStored() throws Exception {
+        Activity activity = activity();
+        CompletableFuture<Recommendation> stored = new CompletableFuture<>();
+        when(pipeline.process(activity)).thenReturn(stored);
+
+        listener.processActivity(activity, channel, DELIVERY_TAG);
+
+        assertThat(inFlight()).isEqualTo(1);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        stored.complete(Recommendation.builder().activityId("a1").build());
+        verify(channel).basicAck(DELIVERY_TAG, false);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void breakerRejectionIsRequeued() throws Exception {
+        Activity activity = activity();
+        when(pipeline.process(activity)).thenReturn(CompletableFuture.failedFuture(
+                CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults(GeminiService.RESILIENCE_INSTANCE))));
+
+        listener.processActivity(activity, channel, DELIVERY_TAG);
+
+        verify(channel).basicNack(DELIVERY_TAG, false, true);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void throttledGeminiCallIsRequeued() throws Exception {
+        Activity activity = activity();
+        when(pipeline.process(activity)).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("batch failed",
+                WebClientResponseException.create(HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests", null, null, null))));
+
+        listener.processActivity(activity, channel, DELIVERY_TAG);
+
+        verify(channel).basicNack(DELIVERY_TAG, false, true);
+    }
+
+    @Test
+    void badRequestIsDeadLettered() throws Exception {
+        Activity activity = activity();
+        when(pipeline.process(activity)).thenReturn(CompletableFuture.failedFuture(
+                WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null)));
+
+        listener.processActivity(activity, channel, DELIVERY_TAG);
+
+        verify(channel).basicNack(DELIVERY_TAG, false, false);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void synchronousFailureIsDeadLetteredAndRethrown() throws Exception {
+        Activity activity = activity();
+        when(pipeline.process(activity)).thenThrow(new IllegalArgumentException("unparseable activity"));
+
+        assertThatThrownBy(() -> listener.processActivity(activity, channel, DELIVERY_TAG))
+                .hasMessage("unparseable activity");
+        verify(channel).basicNack(DELIVERY_TAG, false, false);
+        assertThat(inFlight()).isZero();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("ai.consumer.in_flight").gauge().value();
+    }
+
+    private static Activity activity() {
+        Activity activity = new Activity();
+        activity.setId("a1");
+        activity.setUserId("u1");
+        activity.setType("RUNNING");
+        return activity;
+    }
+}
@@ -0,0 +1,144 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.MetricSummary;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AiActivityServiceTest {
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    private final LlmClient llmClient = mock(LlmClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiActivityService service = new AiActivityService(llmClient, new GeminiResponseParser(),
+            new RecommendationCache(null, null, null, meterRegistry, false, 10, Duration.ofHours(1), Duration.ofDays(7)),
+            new LocalRecommendationEngine(), meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void batchAnswerCoveringEveryActivityNeedsOneRequest() throws Exception {
+        when(llmClient.getAnswer(argThat(AiActivityServiceTest::isBatchPrompt))).thenReturn(envelope("""
+                [{"activityId": "a1", "analysis": {"overall": "Strong run"}},
+                 {"activityId": "a2", "analysis": {"overall": "Easy ride"}}]"""));
+
+        Map<String, Recommendation> results = service.generateRecommendations(List.of(
+                activity("a1", "RUNNING"), activity("a2", "CYCLING")));
+
+        assertThat(results.get("a1").getRecommendation()).isEqualTo("Overall:Strong run:");
+        assertThat(results.get("a2").getRecommendation()).isEqualTo("Overall:Easy ride:");
+        assertThat(results.values()).extracting(Recommendation::getSource).containsOnly(AiActivityService.SOURCE_LLM);
+        verify(llmClient, times(1)).getAnswer(anyString());
+    }
+
+    @Test
+    void activitiesMissingFromTheBatchAnswerAreAskedForSingly() throws Exception {
+        when(llmClient.getAnswer(argThat(AiActivityServiceTest::isBatchPrompt))).thenReturn(envelope("""
+                [{"activityId": "a1", "analysis": {"overall": "Strong run"}}]"""));
+        when(llmClient.getAnswer(argThat(prompt -> isSinglePrompt(prompt, "CYCLING"))))
+                .thenReturn(envelope("{\"analysis\": {\"overall\": \"Easy ride\"}}"));
+
+        Map<String, Recommendation> results = service.generateRecommendations(List.of(
+                activity("a1", "RUNNING"), activity("a2", "CYCLING")));
+
+        assertThat(results.get("a1").getRecommendation()).isEqualTo("Overall:Strong run:");
+        assertThat(results.get("a2").getRecommendation()).isEqualTo("Overall:Easy ride:");
+        assertThat(meterRegistry.counter("ai.batch.item_fallbacks").count()).isEqualTo(1);
+        verify(llmClient, times(2)).getAnswer(anyString());
+    }
+
+    @Test
+    void failedSingleRequestGetsTheRuleEngineAnswerWithoutCostingTheOthers() throws Exception {
+        when(llmClient.getAnswer(argThat(AiActivityServiceTest::isBatchPrompt))).thenReturn(envelope("not json"));
+        when(llmClient.getAnswer(argThat(prompt -> isSinglePrompt(prompt, "RUNNING"))))
+                .thenReturn(envelope("{\"analysis\": {\"overall\": \"Strong run\"}}"));
+        when(llmClient.getAnswer(argThat(prompt -> isSinglePrompt(prompt, "CYCLING"))))
+                .thenThrow(new IllegalStateException("gemini timed out"));
+
+        Map<String, Recommendation> results = service.generateRecommendations(List.of(
+                activity("a1", "RUNNING"), activity("a2", "CYCLING")));
+
+        assertThat(results.get("a1").getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+        assertThat(results.get("a2").getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        assertThat(results.get("a2").getActivityId()).isEqualTo("a2");
+        assertThat(meterRegistry.counter("ai.batch.item_fallbacks").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("ai.batch.item_failures").count()).isEqualTo(1);
+    }
+
+    @Test
+    void singleActivityBatchSkipsTheBatchPrompt() throws Exception {
+        when(llmClient.getAnswer(argThat(prompt -> isSinglePrompt(prompt, "RUNNING"))))
+                .thenReturn(envelope("{\"analysis\": {\"overall\": \"Strong run\"}}"));
+
+        Map<String, Recommendation> results = service.generateRecommendations(List.of(activity("a1", "RUNNING")));
+
+        assertThat(results.get("a1").getRecommendation()).isEqualTo("Overall:Strong run:");
+        verify(llmClient, times(1)).getAnswer(anyString());
+    }
+
+    @Test
+    void promptsMentionSampleSeriesOnlyForActivitiesThatHaveThem() throws Exception {
+        when(llmClient.getAnswer(anyString())).thenReturn(envelope("""
+                [{"activityId": "a1", "analysis": {"overall": "Strong run"}},
+                 {"activityId": "a2", "analysis": {"overall": "Easy ride"}}]"""));
+        Activity withSeries = activity("a1", "RUNNING");
+        MetricSummary heartRate = new MetricSummary();
+        heartRate.setCount(60);
+        heartRate.setAvg(150);
+        withSeries.setSeriesSummaries(Map.of("heartRate", heartRate));
+
+        service.generateRecommendations(List.of(withSeries, activity("a2", "CYCLING")));
+        service.generateRecommendations(List.of(activity("a3", "WALKING")));
+
+        ArgumentCaptor<String> prompts = ArgumentCaptor.forClass(String.class);
+        verify(llmClient, times(2)).getAnswer(prompts.capture());
+        String batch = prompts.getAllValues().get(0);
+        assertThat(batch).contains("activity Type: RUNNING, Duration: 30 minutes, Calories Burned: 300, "
+                + "Additional Metrics: null, Sample Series: heartRate avg 150.0");
+        assertThat(batch).containsOnlyOnce("Sample Series:").doesNotContain("Sample Series: null");
+        assertThat(prompts.getAllValues().get(1)).doesNotContain("Sample Series");
+    }
+
+    private static boolean isBatchPrompt(String prompt) {
+        return prompt != null && prompt.contains("respond with a JSON array only");
+    }
+
+    private static boolean isSinglePrompt(String prompt, String type) {
+        return prompt != null && !isBatchPrompt(prompt) && prompt.contains("activity Type: " + type + ",");
+    }
+
+    private static Activity activity(String id, String type) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setUserId("u1");
+        activity.setType(type);
+        activity.setDuration(30);
+        activity.setCaloriesBurned(300);
+        return activity;
+    }
+
+    private static String envelope(String text) throws JsonProcessingException {
+        return MAPPER.writeValueAsString(Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", text)))))));
+    }
+}
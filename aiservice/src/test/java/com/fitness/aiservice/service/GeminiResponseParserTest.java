@@ -0,0 +1,168 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.aiservice.service.GeminiResponseParser.ParsedAnalysis;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiResponseParserTest {
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+    private static final String ANALYSIS = """
+            {
+              "analysis": {
+                "overall": "Solid effort",
+                "pace": "Steady",
+                "heartRate": "Zone 2",
+                "caloriesBurned": "On target"
+              },
+              "improvements": [{"area": "Cadence", "recommendation": "Shorten your stride"}],
+              "suggestions": [{"workout": "Intervals", "description": "6x400m"}],
+              "safety": ["Warm up", "Hydrate"]
+            }""";
+
+    private final GeminiResponseParser parser = new GeminiResponseParser();
+
+    @Test
+    void parsesAPlainAnalysis() throws IOException {
+        assertFullAnalysis(parser.parse(envelope(ANALYSIS)));
+    }
+
+    @Test
+    void stripsCodeFences() throws IOException {
+        assertFullAnalysis(parser.parse(envelope("```json\n" + ANALYSIS + "\n```")));
+        assertFullAnalysis(parser.parse(envelope("```\n" + ANALYSIS + "\n```\n")));
+    }
+
+    @Test
+    void ignoresProseAroundTheJson() throws IOException {
+        assertFullAnalysis(parser.parse(envelope("Here is your analysis:\n" + ANALYSIS + "\nKeep it up!")));
+        assertFullAnalysis(parser.parse(envelope("Sure.\n```json\n" + ANALYSIS + "\n```\nAnything else?")));
+    }
+
+    @Test
+    void acceptsTrailingCommas() throws IOException {
+        ParsedAnalysis analysis = parser.parse(envelope("""
+                {
+                  "analysis": {"overall": "Fine",},
+                  "safety": ["Warm up", "Hydrate",],
+                }"""));
+
+        assertThat(analysis.recommendation()).isEqualTo("Overall:Fine:");
+        assertThat(analysis.safety()).containsExactly("Warm up", "Hydrate");
+    }
+
+    @Test
+    void missingFieldsFallBackToDefaults() throws IOException {
+        ParsedAnalysis analysis = parser.parse(envelope("{\"analysis\": {\"pace\": \"Quick\"}}"));
+
+        assertThat(analysis.hasAnalysis()).isTrue();
+        assertThat(analysis.recommendation()).isEqualTo("Pace:Quick:");
+        assertThat(analysis.improvements()).containsExactly("NO specific Improvements provided: ");
+        assertThat(analysis.suggestions()).containsExactly("No specific Suggestion provided: ");
+        assertThat(analysis.safety()).containsExactly("Follow General Safety Guidelines");
+
+        ParsedAnalysis empty = parser.parse(envelope("{}"));
+        assertThat(empty.hasAnalysis()).isFalse();
+        assertThat(empty.recommendation()).isEmpty();
+        assertThat(empty.activityId()).isNull();
+    }
+
+    @Test
+    void skipsExtraFieldsAndUnexpectedShapes() throws IOException {
+        ParsedAnalysis analysis = parser.parse(envelope("""
+                {
+                  "confidence": {"score": 0.9, "notes": ["a", {"b": 1}]},
+                  "analysis": {"overall": "Good", "mood": {"level": "high"}, "pace": 5.2},
+                  "improvements": "none",
+                  "suggestions": [{"workout": "Tempo", "description": "20min", "intensity": [1, 2]}, "loose"],
+                  "safety": null
+                }"""));
+
+        assertThat(analysis.recommendation()).isEqualTo("Overall:Good:\n\nPace:5.2:");
+        assertThat(analysis.improvements()).containsExactly("NO specific Improvements provided: ");
+        assertThat(analysis.suggestions()).containsExactly("Tempo: 20min", ": ");
+        assertThat(analysis.safety()).containsExactly("Follow General Safety Guidelines");
+    }
+
+    @Test
+    void readsEnvelopeFieldsInAnyOrder() throws IOException {
+        String response = """
+                {"usageMetadata": {"promptTokenCount": 12},
+                 "candidates": [{"finishReason": "STOP", "content": {"role": "model", "parts": [{"text": %s}]}}]}"""
+                .formatted(MAPPER.writeValueAsString(ANALYSIS));
+
+        assertFullAnalysis(parser.parse(response));
+    }
+
+    @Test
+    void batchKeepsTheActivityIdsTheModelReturned() throws IOException {
+        List<ParsedAnalysis> analyses = parser.parseBatch(envelope("""
+                ```json
+                [
+                  {"activityId": "a1", "analysis": {"overall": "First"}},
+                  "not an analysis",
+                  {"activityId": "unknown-id", "analysis": {"overall": "Invented"}},
+                  {"activityId": "a2"},
+                ]
+                ```"""));
+
+        assertThat(analyses).extracting(ParsedAnalysis::activityId).containsExactly("a1", "unknown-id", "a2");
+        assertThat(analyses).extracting(ParsedAnalysis::hasAnalysis).containsExactly(true, true, false);
+        assertThat(analyses.get(0).recommendation()).isEqualTo("Overall:First:");
+    }
+
+    @Test
+    void batchWithProseBeforeTheArray() throws IOException {
+        List<ParsedAnalysis> analyses = parser.parseBatch(envelope(
+                "Results for both activities:\n[{\"activityId\": \"a1\"}, {\"activityId\": \"a2\"}]\nDone."));
+
+        assertThat(analyses).extracting(ParsedAnalysis::activityId).containsExactly("a1", "a2");
+    }
+
+    @Test
+    void truncatedAnalysisFails() {
+        String truncated = ANALYSIS.substring(0, ANALYSIS.indexOf("\"suggestions\""));
+
+        assertThatThrownBy(() -> parser.parse(envelope(truncated))).isInstanceOf(JsonProcessingException.class);
+        assertThatThrownBy(() -> parser.parse(envelope("```json\n{\"analysis\": {\"overall\": \"Go"))).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser.parseBatch(envelope("[{\"activityId\": \"a1\"}, {\"activityId\""))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void truncatedEnvelopeFails() throws IOException {
+        String response = envelope(ANALYSIS);
+
+        assertThatThrownBy(() -> parser.parse(response.substring(0, response.length() / 2))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void wrongShapesFail() {
+        assertThatThrownBy(() -> parser.parse(envelope("[" + ANALYSIS + "]"))).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser.parseBatch(envelope("no json at all"))).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser.parse("{\"candidates\": []}")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser.parse("{\"promptFeedback\": {\"blockReason\": \"SAFETY\"}}"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("candidates");
+    }
+
+    private static void assertFullAnalysis(ParsedAnalysis analysis) {
+        assertThat(analysis.hasAnalysis()).isTrue();
+        assertThat(analysis.recommendation()).isEqualTo(
+                "Overall:Solid effort:\n\nPace:Steady:\n\nHeartRate:Zone 2:\n\nCaloriesBurned:On target:");
+        assertThat(analysis.improvements()).containsExactly("Cadence: Shorten your stride");
+        assertThat(analysis.suggestions()).containsExactly("Intervals: 6x400m");
+        assertThat(analysis.safety()).containsExactly("Warm up", "Hydrate");
+    }
+
+    private static String envelope(String text) throws JsonProcessingException {
+        return MAPPER.writeValueAsString(Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", text)))))));
+    }
+}
@@ -0,0 +1,223 @@
+package com.fitness.aiservice.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmCallLimiterTest {
+
+    @Test
+    void mixedLoadNeverExceedsTheCapAndReturnsEveryPermit() throws Exception {
+        LlmCallLimiter limiter = limiter(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Mono<String>> reactive = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            reactive.add(limiter.track(Mono.fromCallable(() -> enter(running, maxRunning))
+                    .delayElement(Duration.ofMillis(2))
+                    .doOnNext(value -> running.decrementAndGet())));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> blocking = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                blocking.add(executor.submit(() -> limiter.call(() -> {
+                    enter(running, maxRunning);
+                    sleep(2);
+                    running.decrementAndGet();
+                    return "blocking";
+                })));
+            }
+            assertThat(Mono.when(reactive).timeout(Duration.ofSeconds(10)).then(Mono.just(true)).block()).isTrue();
+            for (Future<String> call : blocking) {
+                assertThat(call.get(10, TimeUnit.SECONDS)).isEqualTo("blocking");
+            }
+        }
+
+        assertThat(maxRunning.get()).isBetween(1, 4);
+        assertHoldsExactly(limiter, 4);
+    }
+
+    @Test
+    void waitersOfBothKindsAreServedInArrivalOrder() throws Exception {
+        LlmCallLimiter limiter = limiter(1);
+        List<String> served = new CopyOnWriteArrayList<>();
+        Sinks.Empty<Void> holder = Sinks.empty();
+        Disposable held = limiter.track(holder.asMono()).subscribe();
+
+        Disposable first = limiter.track(Mono.fromRunnable(() -> served.add("reactive-1"))).subscribe();
+        await(() -> limiter.getWaiting() == 1);
+        Thread second = Thread.ofVirtual().start(() -> limiter.call(() -> served.add("blocking-2")));
+        await(() -> limiter.getWaiting() == 2);
+        Disposable third = limiter.track(Mono.fromRunnable(() -> served.add("reactive-3"))).subscribe();
+        await(() -> limiter.getWaiting() == 3);
+
+        holder.tryEmitEmpty();
+        second.join(5_000);
+        await(() -> served.size() == 3);
+
+        assertThat(served).containsExactly("reactive-1", "blocking-2", "reactive-3");
+        assertHoldsExactly(limiter, 1);
+        held.dispose();
+        first.dispose();
+        third.dispose();
+    }
+
+    @Test
+    void freedPermitGoesToTheQueuedCallerNotANewOne() {
+        LlmCallLimiter limiter = limiter(1);
+        List<String> served = new CopyOnWriteArrayList<>();
+        Sinks.Empty<Void> holder = Sinks.empty();
+        limiter.track(holder.asMono()).subscribe();
+        Disposable queued = limiter.track(Mono.fromRunnable(() -> served.add("queued")).then(Mono.never())).subscribe();
+
+        holder.tryEmitEmpty();
+        Disposable late = limiter.track(Mono.fromRunnable(() -> served.add("late"))).subscribe();
+
+        assertThat(served).containsExactly("queued");
+        assertThat(limiter.getWaiting()).isEqualTo(1);
+        queued.dispose();
+        assertThat(served).containsExactly("queued", "late");
+        late.dispose();
+        assertHoldsExactly(limiter, 1);
+    }
+
+    @Test
+    void cancelledWaiterLeavesTheQueueWithoutTakingAPermit() {
+        LlmCallLimiter limiter = limiter(1);
+        AtomicInteger subscribed = new AtomicInteger();
+        Sinks.Empty<Void> holder = Sinks.empty();
+        limiter.track(holder.asMono()).subscribe();
+        Disposable waiting = limiter.track(Mono.fromRunnable(subscribed::incrementAndGet)).subscribe();
+        assertThat(limiter.getWaiting()).isEqualTo(1);
+
+        waiting.dispose();
+        assertThat(limiter.getWaiting()).isZero();
+        holder.tryEmitEmpty();
+
+        assertThat(subscribed).hasValue(0);
+        assertHoldsExactly(limiter, 1);
+    }
+
+    @Test
+    void interruptedBlockingWaiterLeavesTheQueue() throws Exception {
+        LlmCallLimiter limiter = limiter(1);
+        Sinks.Empty<Void> holder = Sinks.empty();
+        limiter.track(holder.asMono()).subscribe();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                limiter.call(() -> "never");
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        });
+        await(() -> limiter.getWaiting() == 1);
+
+        waiter.interrupt();
+        waiter.join(5_000);
+        holder.tryEmitEmpty();
+
+        assertThat(failures).singleElement().satisfies(e ->
+                assertThat(e).hasCauseInstanceOf(InterruptedException.class));
+        assertHoldsExactly(limiter, 1);
+    }
+
+    @Test
+    void releaseRacingCancelNeitherLeaksNorDuplicatesAPermit() throws Exception {
+        LlmCallLimiter limiter = limiter(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            for (int i = 0; i < 2_000; i++) {
+                Sinks.Empty<Void> holder = Sinks.empty();
+                limiter.track(holder.asMono()).subscribe();
+                Disposable waiting = limiter.track(Mono.never()).subscribe();
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> release = executor.submit(() -> {
+                    start.await();
+                    return holder.tryEmitEmpty();
+                });
+                Future<?> cancel = executor.submit(() -> {
+                    start.await();
+                    waiting.dispose();
+                    return null;
+                });
+                release.get(5, TimeUnit.SECONDS);
+                cancel.get(5, TimeUnit.SECONDS);
+
+                assertThat(limiter.getInFlight()).as("round %d", i).isZero();
+                assertThat(limiter.getWaiting()).as("round %d", i).isZero();
+            }
+        }
+        assertHoldsExactly(limiter, 1);
+    }
+
+    @Test
+    void capIsClampedToTheBulkhead() {
+        LlmCallLimiter limiter = new LlmCallLimiter(16, bulkheads(3), new SimpleMeterRegistry());
+
+        assertHoldsExactly(limiter, 3);
+    }
+
+    private static LlmCallLimiter limiter(int maxInFlight) {
+        return new LlmCallLimiter(maxInFlight, bulkheads(maxInFlight), new SimpleMeterRegistry());
+    }
+
+    private static BulkheadRegistry bulkheads(int maxConcurrentCalls) {
+        return BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(maxConcurrentCalls).build());
+    }
+
+    /**
+     * Occupies permits with calls that never finish: exactly {@code permits}
+     * of them must start and the next one must queue.
+     */
+    private static void assertHoldsExactly(LlmCallLimiter limiter, int permits) {
+        List<Disposable> calls = new ArrayList<>();
+        for (int i = 0; i <= permits; i++) {
+            calls.add(limiter.track(Mono.never()).subscribe());
+        }
+        assertThat(limiter.getInFlight()).isEqualTo(permits);
+        assertThat(limiter.getWaiting()).isEqualTo(1);
+        calls.forEach(Disposable::dispose);
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getWaiting()).isZero();
+    }
+
+    private static String enter(AtomicInteger running, AtomicInteger maxRunning) {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        return "reactive";
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
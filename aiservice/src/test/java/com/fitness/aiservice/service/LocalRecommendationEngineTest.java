@@ -0,0 +1,115 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.MetricSummary;
+import com.fitness.aiservice.model.Recommendation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRecommendationEngineTest {
+    private final LocalRecommendationEngine engine = new LocalRecommendationEngine();
+
+    @Test
+    void moderateRunWithDistanceGetsPaceAndIntensity() {
+        Activity activity = activity("running", 30, 300);
+        activity.setAdditionalMetrics(Map.of("distance", 5));
+
+        Recommendation recommendation = engine.recommend(activity);
+
+        assertThat(recommendation.getRecommendation()).isEqualTo("""
+                Overall:Running session of 30 minutes burning 300 kcal (10.0 kcal/min), a moderate intensity effort for running.:
+
+                Pace:5.00 km in 30 minutes, 6.00 min/km (10.0 km/h).:
+
+                CaloriesBurned:10.0 kcal/min is within the typical 9-14 kcal/min range for running.:""");
+        assertThat(recommendation.getImprovements())
+                .containsExactly("Consistency: Keep this routine and progress volume by no more than 10% per week");
+        assertThat(recommendation.getSuggestions()).hasSize(2).allMatch(suggestion -> suggestion.contains(":"));
+        assertThat(recommendation.getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        assertThat(recommendation.getActivityId()).isEqualTo("a1");
+        assertThat(recommendation.getUserId()).isEqualTo("u1");
+        assertThat(recommendation.getActivityType()).isEqualTo("running");
+    }
+
+    @Test
+    void explicitPaceWinsOverDistance() {
+        Activity activity = activity("RUN", 30, 300);
+        activity.setAdditionalMetrics(Map.of("avgPace", "5.5", "distance", 5));
+
+        assertThat(engine.recommend(activity).getRecommendation()).contains("Pace:Average pace of 5.50 min/km.:");
+    }
+
+    @Test
+    void shortLowIntensitySessionGetsDurationAndIntensityTips() {
+        Recommendation recommendation = engine.recommend(activity("cycling", 10, 30));
+
+        assertThat(recommendation.getRecommendation()).contains("a low intensity effort for cycling");
+        assertThat(recommendation.getImprovements()).hasSize(2);
+        assertThat(recommendation.getImprovements().get(0)).startsWith("Duration:");
+        assertThat(recommendation.getImprovements().get(1)).startsWith("Intensity:");
+    }
+
+    @Test
+    void highIntensityAsksForRecovery() {
+        assertThat(engine.recommend(activity("walking", 30, 300)).getImprovements())
+                .containsExactly("Recovery: Follow this session with an easy day to absorb the training load");
+    }
+
+    @Test
+    void heartRateFromTheSampleSeriesIsUsedWhenNoMetricIsGiven() {
+        Activity activity = activity("running", 40, 480);
+        MetricSummary heartRate = new MetricSummary();
+        heartRate.setCount(120);
+        heartRate.setAvg(172);
+        heartRate.setMax(188);
+        activity.setSeriesSummaries(Map.of("heartRate", heartRate));
+
+        Recommendation recommendation = engine.recommend(activity);
+
+        assertThat(recommendation.getRecommendation())
+                .contains("HeartRate:Average heart rate of 172 bpm, mostly in the high intensity zone.:");
+        assertThat(recommendation.getSafety()).anyMatch(point -> point.contains("very high zone"));
+    }
+
+    @Test
+    void heartRateMetricWinsOverTheSeries() {
+        Activity activity = activity("running", 40, 480);
+        activity.setAdditionalMetrics(Map.of("hr", 130));
+        MetricSummary heartRate = new MetricSummary();
+        heartRate.setCount(120);
+        heartRate.setAvg(172);
+        heartRate.setMax(180);
+        activity.setSeriesSummaries(Map.of("heartRate", heartRate));
+
+        Recommendation recommendation = engine.recommend(activity);
+
+        assertThat(recommendation.getRecommendation()).contains("Average heart rate of 130 bpm, mostly in the aerobic base zone");
+        assertThat(recommendation.getSafety()).noneMatch(point -> point.contains("very high zone"));
+    }
+
+    @Test
+    void missingDataStillProducesAnAnswer() {
+        Activity activity = activity(null, null, null);
+        activity.setAdditionalMetrics(Map.of("distance", "far"));
+
+        Recommendation recommendation = engine.recommend(activity);
+
+        assertThat(recommendation.getRecommendation()).isEqualTo("Overall:Workout session of 0 minutes burning 0 kcal.:");
+        assertThat(recommendation.getImprovements()).singleElement().asString().startsWith("Consistency:");
+        assertThat(recommendation.getSafety()).first().isEqualTo("Always warm up for 5-10 minutes before starting");
+        assertThat(recommendation.getSafety()).last().isEqualTo("Stay hydrated and listen to your body");
+    }
+
+    private static Activity activity(String type, Integer duration, Integer calories) {
+        Activity activity = new Activity();
+        activity.setId("a1");
+        activity.setUserId("u1");
+        activity.setType(type);
+        activity.setDuration(duration);
+        activity.setCaloriesBurned(calories);
+        return activity;
+    }
+}
@@ -0,0 +1,158 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationBatcherTest {
+    private final AiActivityService aiService = mock(AiActivityService.class);
+    private RecommendationBatcher batcher;
+
+    @AfterEach
+    void shutdown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void disabledBatcherAnalyzesEachActivityOnItsOwn() {
+        batcher = batcher(false, 8, Duration.ofSeconds(10));
+        Activity activity = activity("a1");
+        when(aiService.generateRecommendation(activity)).thenReturn(recommendation("a1"));
+
+        assertThat(batcher.generateRecommendation(activity).getActivityId()).isEqualTo("a1");
+        verify(aiService, never()).generateRecommendations(anyList());
+    }
+
+    @Test
+    void fullBatchIsAnalyzedWithOneRequest() throws Exception {
+        batcher = batcher(true, 3, Duration.ofSeconds(10));
+        when(aiService.generateRecommendations(anyList())).thenAnswer(invocation -> answerAll(invocation.getArgument(0)));
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Recommendation>> results = new ArrayList<>();
+            for (String id : List.of("a1", "a2", "a3")) {
+                results.add(callers.submit(() -> batcher.generateRecommendation(activity(id))));
+            }
+            assertThat(results.get(0).get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+            assertThat(results.get(1).get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a2");
+            assertThat(results.get(2).get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a3");
+        }
+
+        ArgumentCaptor<List<Activity>> batch = batchCaptor();
+        verify(aiService, times(1)).generateRecommendations(batch.capture());
+        assertThat(batch.getValue()).extracting(Activity::getId).containsExactlyInAnyOrder("a1", "a2", "a3");
+    }
+
+    @Test
+    void lingerFlushesAPartialBatch() {
+        batcher = batcher(true, 8, Duration.ofMillis(50));
+        when(aiService.generateRecommendations(anyList())).thenAnswer(invocation -> answerAll(invocation.getArgument(0)));
+
+        long start = System.nanoTime();
+        Recommendation recommendation = batcher.generateRecommendation(activity("a1"));
+
+        assertThat(recommendation.getActivityId()).isEqualTo("a1");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+        ArgumentCaptor<List<Activity>> batch = batchCaptor();
+        verify(aiService).generateRecommendations(batch.capture());
+        assertThat(batch.getValue()).extracting(Activity::getId).containsExactly("a1");
+    }
+
+    @Test
+    void activityMissingFromTheResultsFailsOnlyItsCaller() throws Exception {
+        batcher = batcher(true, 2, Duration.ofSeconds(10));
+        when(aiService.generateRecommendations(anyList())).thenReturn(Map.of("a1", recommendation("a1")));
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Recommendation> answered = callers.submit(() -> batcher.generateRecommendation(activity("a1")));
+            Future<Recommendation> missing = callers.submit(() -> batcher.generateRecommendation(activity("a2")));
+
+            assertThat(answered.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+            assertThatThrownBy(() -> missing.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("a2");
+        }
+    }
+
+    @Test
+    void failedBatchFailsEveryCallerWithTheOriginalException() throws Exception {
+        batcher = batcher(true, 2, Duration.ofSeconds(10));
+        RuntimeException failure = new RuntimeException("gemini unavailable");
+        when(aiService.generateRecommendations(anyList())).thenThrow(failure);
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Recommendation> first = callers.submit(() -> batcher.generateRecommendation(activity("a1")));
+            Future<Recommendation> second = callers.submit(() -> batcher.generateRecommendation(activity("a2")));
+
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).cause().isSameAs(failure);
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).cause().isSameAs(failure);
+        }
+    }
+
+    @Test
+    void asyncCallersShareABatch() {
+        batcher = batcher(true, 2, Duration.ofSeconds(10));
+        when(aiService.generateRecommendations(anyList())).thenAnswer(invocation -> answerAll(invocation.getArgument(0)));
+
+        List<String> ids = Mono.zip(batcher.generateRecommendationAsync(activity("a1")),
+                        batcher.generateRecommendationAsync(activity("a2")))
+                .map(pair -> List.of(pair.getT1().getActivityId(), pair.getT2().getActivityId()))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(ids).containsExactly("a1", "a2");
+        verify(aiService, timeout(1000).times(1)).generateRecommendations(anyList());
+    }
+
+    private RecommendationBatcher batcher(boolean enabled, int maxBatchSize, Duration linger) {
+        return new RecommendationBatcher(aiService, new SimpleMeterRegistry(), enabled, maxBatchSize, linger);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Activity>> batchCaptor() {
+        return ArgumentCaptor.forClass((Class<List<Activity>>) (Class<?>) List.class);
+    }
+
+    private static Map<String, Recommendation> answerAll(List<Activity> activities) {
+        return activities.stream().map(Activity::getId)
+                .collect(Collectors.toMap(Function.identity(), RecommendationBatcherTest::recommendation));
+    }
+
+    private static Activity activity(String id) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setUserId("u1");
+        activity.setType("RUNNING");
+        activity.setDuration(30);
+        activity.setCaloriesBurned(300);
+        return activity;
+    }
+
+    private static Recommendation recommendation(String activityId) {
+        return Recommendation.builder().activityId(activityId).source(AiActivityService.SOURCE_LLM).build();
+    }
+}
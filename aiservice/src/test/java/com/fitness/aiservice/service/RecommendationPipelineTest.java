@@ -0,0 +1,211 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecommendationPipelineTest {
+    private final RecommendationBatcher batcher = mock(RecommendationBatcher.class);
+    private final RecommendationWriteBuffer writeBuffer = mock(RecommendationWriteBuffer.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+    private final List<Recommendation> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch llmAnswers = new CountDownLatch(1);
+    private RecommendationPipeline pipeline;
+
+    @BeforeEach
+    void storeEveryWrite() {
+        when(writeBuffer.write(any())).thenAnswer(invocation -> {
+            Recommendation recommendation = invocation.getArgument(0);
+            written.add(recommendation);
+            return CompletableFuture.completedFuture(recommendation);
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        llmAnswers.countDown();
+        pipeline.shutdown();
+    }
+
+    @Test
+    void withoutALatencyBudgetTheLlmAnswerIsAwaited() {
+        pipeline = pipeline(Duration.ZERO, 4);
+        when(batcher.generateRecommendation(any())).thenAnswer(invocation -> llm(invocation.getArgument(0)));
+
+        Recommendation stored = pipeline.process(activity("a1")).join();
+
+        assertThat(stored.getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+        assertThat(written).hasSize(1);
+        assertThat(count("ai.hedge.fast_path")).isZero();
+    }
+
+    @Test
+    void llmAnswerWithinTheBudgetIsStoredDirectly() {
+        pipeline = pipeline(Duration.ofSeconds(5), 4);
+        when(batcher.generateRecommendation(any())).thenAnswer(invocation -> llm(invocation.getArgument(0)));
+
+        Recommendation stored = pipeline.process(activity("a1")).join();
+
+        assertThat(stored.getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+        assertThat(written).extracting(Recommendation::getSource).containsExactly(AiActivityService.SOURCE_LLM);
+        assertThat(count("ai.hedge.fast_path")).isZero();
+    }
+
+    @Test
+    void slowLlmIsHedgedWithTheRuleEngineAndUpgradedInPlace() {
+        pipeline = pipeline(Duration.ofMillis(50), 4);
+        when(batcher.generateRecommendation(any())).thenAnswer(invocation -> slowLlm(invocation.getArgument(0)));
+
+        Recommendation stored = pipeline.process(activity("a1")).join();
+
+        assertThat(stored.getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        assertThat(count("ai.hedge.fast_path")).isEqualTo(1);
+        llmAnswers.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> written.size() == 2);
+        assertThat(written).extracting(Recommendation::getSource)
+                .containsExactly(LocalRecommendationEngine.SOURCE, AiActivityService.SOURCE_LLM);
+        assertThat(written).extracting(Recommendation::getActivityId).containsOnly("a1");
+        assertThat(count("ai.hedge.upgrades")).isEqualTo(1);
+    }
+
+    @Test
+    void withoutAFreeUpgradeSlotTheActivityWaitsForTheLlm() throws Exception {
+        pipeline = pipeline(Duration.ofMillis(50), 1);
+        when(batcher.generateRecommendation(any())).thenAnswer(invocation -> slowLlm(invocation.getArgument(0)));
+
+        assertThat(pipeline.process(activity("a1")).join().getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        CompletableFuture<Recommendation> unhedged = CompletableFuture.supplyAsync(() -> pipeline.process(activity("a2")).join());
+
+        Thread.sleep(200);
+        assertThat(unhedged).isNotDone();
+        assertThat(count("ai.hedge.skipped")).isEqualTo(1);
+        llmAnswers.countDown();
+        assertThat(unhedged.get(5, TimeUnit.SECONDS).getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+
+        // the upgrade released its slot, so the next slow activity is hedged again
+        await().atMost(Duration.ofSeconds(5)).until(() -> count("ai.hedge.upgrades") == 1);
+        doAnswer(invocation -> {
+            Thread.sleep(500);
+            return llm(invocation.getArgument(0));
+        }).when(batcher).generateRecommendation(any());
+        assertThat(pipeline.process(activity("a3")).join().getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+    }
+
+    @Test
+    void openBreakerSkipsTheHedge() {
+        pipeline = pipeline(Duration.ofMillis(50), 4);
+        circuitBreakers.circuitBreaker(GeminiService.RESILIENCE_INSTANCE).transitionToOpenState();
+        when(batcher.generateRecommendation(any())).thenAnswer(invocation -> llm(invocation.getArgument(0)));
+
+        assertThat(pipeline.process(activity("a1")).join().getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+        assertThat(count("ai.hedge.skipped")).isEqualTo(1);
+        assertThat(count("ai.hedge.fast_path")).isZero();
+    }
+
+    @Test
+    void bulkheadRejectionIsAnsweredByTheRuleEngine() {
+        pipeline = pipeline(Duration.ZERO, 4);
+        when(batcher.generateRecommendation(any())).thenThrow(new IllegalStateException("batch failed", bulkheadFull()));
+
+        Recommendation stored = pipeline.process(activity("a1")).join();
+
+        assertThat(stored.getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        assertThat(count("ai.llm.bulkhead_fallbacks")).isEqualTo(1);
+    }
+
+    @Test
+    void otherLlmFailuresPropagate() {
+        pipeline = pipeline(Duration.ZERO, 4);
+        when(batcher.generateRecommendation(any())).thenThrow(new IllegalStateException("gemini returned 400"));
+
+        assertThatThrownBy(() -> pipeline.process(activity("a1"))).hasMessage("gemini returned 400");
+        assertThat(written).isEmpty();
+    }
+
+    @Test
+    void asyncPipelineHedgesAndUpgrades() {
+        pipeline = pipeline(Duration.ofMillis(50), 4);
+        when(batcher.generateRecommendationAsync(any())).thenAnswer(invocation -> Mono.fromCallable(
+                () -> slowLlm(invocation.getArgument(0))).subscribeOn(Schedulers.boundedElastic()));
+
+        Recommendation stored = pipeline.processAsync(activity("a1")).block(Duration.ofSeconds(5));
+
+        assertThat(stored.getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        llmAnswers.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> written.size() == 2);
+        assertThat(written.get(1).getSource()).isEqualTo(AiActivityService.SOURCE_LLM);
+        assertThat(count("ai.hedge.upgrades")).isEqualTo(1);
+    }
+
+    @Test
+    void asyncBulkheadRejectionIsAnsweredByTheRuleEngine() {
+        pipeline = pipeline(Duration.ZERO, 4);
+        when(batcher.generateRecommendationAsync(any())).thenReturn(Mono.error(bulkheadFull()));
+
+        Recommendation stored = pipeline.processAsync(activity("a1")).block(Duration.ofSeconds(5));
+
+        assertThat(stored.getSource()).isEqualTo(LocalRecommendationEngine.SOURCE);
+        assertThat(count("ai.llm.bulkhead_fallbacks")).isEqualTo(1);
+    }
+
+    private RecommendationPipeline pipeline(Duration latencyBudget, int maxPendingUpgrades) {
+        return new RecommendationPipeline(batcher, new LocalRecommendationEngine(), writeBuffer, meterRegistry,
+                circuitBreakers, latencyBudget, maxPendingUpgrades);
+    }
+
+    private double count(String counter) {
+        return meterRegistry.counter(counter).count();
+    }
+
+    private Recommendation slowLlm(Activity activity) throws InterruptedException {
+        llmAnswers.await();
+        return llm(activity);
+    }
+
+    private static Recommendation llm(Activity activity) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .recommendation("Overall:From the LLM:")
+                .source(AiActivityService.SOURCE_LLM)
+                .build();
+    }
+
+    private static BulkheadFullException bulkheadFull() {
+        return BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults(GeminiService.RESILIENCE_INSTANCE));
+    }
+
+    private static Activity activity(String id) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setUserId("u1");
+        activity.setType("RUNNING");
+        activity.setDuration(30);
+        activity.setCaloriesBurned(300);
+        return activity;
+    }
+}
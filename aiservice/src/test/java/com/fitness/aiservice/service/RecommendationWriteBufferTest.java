@@ -0,0 +1,180 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationWriteBufferTest {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int DOCUMENT_VALIDATION_FAILURE = 121;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final ReactiveBulkOperations reactiveBulkOperations = mock(ReactiveBulkOperations.class);
+    private final RecommendationEventPublisher eventPublisher = mock(RecommendationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RecommendationWriteBuffer buffer;
+
+    @AfterEach
+    void shutdown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    void fullBatchIsFlushedWithOneBulkWrite() throws Exception {
+        buffer = buffer("blocking", 2, Duration.ofSeconds(10));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(bulkOperations);
+
+        CompletableFuture<Recommendation> first = buffer.write(recommendation("a1", "first"));
+        CompletableFuture<Recommendation> second = buffer.write(recommendation("a2", "second"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+        assertThat(second.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a2");
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class));
+        verify(bulkOperations, times(1)).execute();
+        verify(eventPublisher, timeout(5000)).written(List.of(first.get(), second.get()));
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterTheInterval() throws Exception {
+        buffer = buffer("blocking", 100, Duration.ofMillis(50));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(bulkOperations);
+
+        long start = System.nanoTime();
+        CompletableFuture<Recommendation> written = buffer.write(recommendation("a1", "only"));
+
+        assertThat(written.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+        verify(bulkOperations, times(1)).execute();
+    }
+
+    @Test
+    void laterWriteForTheSameActivityReplacesThePendingOne() throws Exception {
+        buffer = buffer("blocking", 100, Duration.ofMillis(100));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(bulkOperations);
+
+        CompletableFuture<Recommendation> rules = buffer.write(recommendation("a1", "rules"));
+        CompletableFuture<Recommendation> llm = buffer.write(recommendation("a1", "llm"));
+
+        assertThat(rules.get(5, TimeUnit.SECONDS).getRecommendation()).isEqualTo("llm");
+        assertThat(llm.get(5, TimeUnit.SECONDS).getRecommendation()).isEqualTo("llm");
+        ArgumentCaptor<Object> replaced = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(1)).replaceOne(any(Query.class), replaced.capture(), any(FindAndReplaceOptions.class));
+        assertThat(((Recommendation) replaced.getValue()).getRecommendation()).isEqualTo("llm");
+    }
+
+    @Test
+    void duplicateKeyCountsAsWrittenAndOtherErrorsFailOnlyTheirItem() throws Exception {
+        buffer = buffer("blocking", 3, Duration.ofSeconds(10));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk write failed",
+                bulkWriteFailure(error(DUPLICATE_KEY, 0), error(DOCUMENT_VALIDATION_FAILURE, 1))));
+
+        CompletableFuture<Recommendation> duplicate = buffer.write(recommendation("a1", "raced"));
+        CompletableFuture<Recommendation> invalid = buffer.write(recommendation("a2", "invalid"));
+        CompletableFuture<Recommendation> stored = buffer.write(recommendation("a3", "stored"));
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+        assertThat(stored.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a3");
+        assertThatThrownBy(() -> invalid.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(BulkOperationException.class);
+        assertThat(meterRegistry.counter("ai.persistence.flush.failures").count()).isEqualTo(1);
+        verify(eventPublisher, timeout(5000)).written(List.of(duplicate.get(), stored.get()));
+    }
+
+    @Test
+    void failedFlushFailsEveryWrite() {
+        buffer = buffer("blocking", 2, Duration.ofSeconds(10));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("mongo down"));
+
+        CompletableFuture<Recommendation> first = buffer.write(recommendation("a1", "first"));
+        CompletableFuture<Recommendation> second = buffer.write(recommendation("a2", "second"));
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(DataAccessResourceFailureException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(meterRegistry.counter("ai.persistence.flush.failures").count()).isEqualTo(2);
+        verify(eventPublisher, never()).written(any());
+    }
+
+    @Test
+    void reactiveModeWritesThroughTheReactiveTemplate() throws Exception {
+        buffer = buffer("reactive", 2, Duration.ofSeconds(10));
+        when(reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(reactiveBulkOperations);
+        when(reactiveBulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        CompletableFuture<Recommendation> first = buffer.write(recommendation("a1", "first"));
+        CompletableFuture<Recommendation> second = buffer.write(recommendation("a2", "second"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+        assertThat(second.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a2");
+        verify(reactiveBulkOperations, times(2)).replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Recommendation.class));
+        verify(eventPublisher, timeout(5000)).written(List.of(first.get(), second.get()));
+    }
+
+    @Test
+    void reactiveModeTreatsDuplicateKeysAsWritten() throws Exception {
+        buffer = buffer("reactive", 2, Duration.ofSeconds(10));
+        when(reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)).thenReturn(reactiveBulkOperations);
+        when(reactiveBulkOperations.execute()).thenReturn(Mono.error(
+                bulkWriteFailure(error(DUPLICATE_KEY, 0), error(DOCUMENT_VALIDATION_FAILURE, 1))));
+
+        CompletableFuture<Recommendation> duplicate = buffer.write(recommendation("a1", "raced"));
+        CompletableFuture<Recommendation> invalid = buffer.write(recommendation("a2", "invalid"));
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getActivityId()).isEqualTo("a1");
+        assertThatThrownBy(() -> invalid.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(MongoBulkWriteException.class);
+    }
+
+    private RecommendationWriteBuffer buffer(String pipelineMode, int batchSize, Duration flushInterval) {
+        return new RecommendationWriteBuffer(mongoTemplate, reactiveMongoTemplate, eventPublisher, meterRegistry,
+                pipelineMode, batchSize, flushInterval);
+    }
+
+    private static MongoBulkWriteException bulkWriteFailure(BulkWriteError... errors) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(errors), null,
+                new ServerAddress(), Set.of());
+    }
+
+    private static BulkWriteError error(int code, int index) {
+        return new BulkWriteError(code, "error " + code, new BsonDocument(), index);
+    }
+
+    private static Recommendation recommendation(String activityId, String text) {
+        return Recommendation.builder().activityId(activityId).userId("u1").recommendation(text).build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.fitness.common.amqp;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Binary encoding of the activity.queue contract using Jackson Smile. Messages
+ * carry the application/x-jackson-smile content type and the
+ * {@value #CONTRACT_VERSION_HEADER} header instead of Java class name headers,
+ * so consumers pick the codec per message while JSON and Smile producers
+ * coexist, and decode into their own listener parameter type. Dates are
+ * written as numeric arrays, which Smile stores in a byte per field.
+ * activityservice encodes with it and aiservice decodes with it.
+ */
+public class SmileMessageConverter extends AbstractJackson2MessageConverter {
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+    public static final String CONTRACT_VERSION_HEADER = "x-activity-contract-version";
+    public static final int CONTRACT_VERSION = 1;
+
+    public SmileMessageConverter() {
+        super(SmileMapper.builder()
+                        .configure(MapperFeature.DEFAULT_VIEW_INCLUSION, false)
+                        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                        .findAndAddModules()
+                        .build(),
+                MimeType.valueOf(CONTENT_TYPE));
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties, Type genericType) {
+        Message message = super.createMessage(object, messageProperties, genericType);
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        headers.remove(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+        headers.remove(AbstractJavaTypeMapper.DEFAULT_CONTENT_CLASSID_FIELD_NAME);
+        headers.remove(AbstractJavaTypeMapper.DEFAULT_KEY_CLASSID_FIELD_NAME);
+        headers.put(CONTRACT_VERSION_HEADER, CONTRACT_VERSION);
+        return message;
+    }
+
+    /**
+     * Smile is binary, so the body is always read as bytes; the base class
+     * would decode it to a String first when no charset is configured.
+     */
+    @Override
+    public Object fromMessage(Message message, Object conversionHint) {
+        if (message.getBody() == null || message.getBody().length == 0) {
+            return message.getBody();
+        }
+        MessageProperties properties = message.getMessageProperties();
+        JavaType targetType = properties.getInferredArgumentType() != null
+                ? objectMapper.constructType(properties.getInferredArgumentType())
+                : objectMapper.constructType(Map.class);
+        try {
+            return objectMapper.readValue(message.getBody(), targetType);
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to convert Smile message content", e);
+        }
+    }
+}
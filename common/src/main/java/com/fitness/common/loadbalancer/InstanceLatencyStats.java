@@ -0,0 +1,139 @@
+package com.fitness.common.loadbalancer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks, per service instance, the requests in flight and a peak-sensitive
+ * EWMA of response latency, fed by the load balancer lifecycle of the
+ * gateway's lb:// routes and of {@code @LoadBalanced} WebClients. A slower response replaces the average at once, faster ones pull
+ * it down with weight decided by loadbalancer.peak-ewma.decay, and without
+ * new samples it decays towards zero so an instance that was slow is probed
+ * again later. Failures and 5xx responses count as taking at least
+ * loadbalancer.peak-ewma.error-penalty, so an instance failing fast does not
+ * attract traffic. Services register it with {@code @Import} next to
+ * {@code @LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)}.
+ */
+public class InstanceLatencyStats implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+    private final long decayNanos;
+    private final long errorPenaltyNanos;
+    private final LongSupplier clock;
+    private final Cache<String, InstanceStats> instances;
+
+    @Autowired
+    public InstanceLatencyStats(@Value("${loadbalancer.peak-ewma.decay:10s}") Duration decay,
+                                @Value("${loadbalancer.peak-ewma.error-penalty:1s}") Duration errorPenalty) {
+        this(decay, errorPenalty, System::nanoTime);
+    }
+
+    InstanceLatencyStats(Duration decay, Duration errorPenalty, LongSupplier clock) {
+        this.decayNanos = decay.toNanos();
+        this.errorPenaltyNanos = errorPenalty.toNanos();
+        this.clock = clock;
+        // an instance idle this long has decayed to nothing, so forgetting it changes no choice
+        this.instances = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(Math.max(decayNanos * 20, Duration.ofMinutes(1).toNanos())))
+                .build();
+    }
+
+    /**
+     * Expected cost of sending one more request to the instance: latency
+     * EWMA times requests in flight including this one. An instance without
+     * samples costs nothing while idle, and is avoided while its first
+     * request is still running.
+     */
+    public double cost(ServiceInstance instance) {
+        InstanceStats stats = instances.getIfPresent(key(instance));
+        if (stats == null) {
+            return 0;
+        }
+        int outstanding = stats.outstanding.get();
+        double latency = stats.latency(clock.getAsLong(), decayNanos);
+        if (latency == 0) {
+            return outstanding == 0 ? 0 : Double.MAX_VALUE;
+        }
+        return latency * (outstanding + 1);
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        request.getContext().setRequestStartTime(clock.getAsLong());
+        instances.get(key(lbResponse.getServer()), k -> new InstanceStats()).outstanding.incrementAndGet();
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (completionContext.status() == CompletionContext.Status.DISCARD || lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        InstanceStats stats = instances.get(key(lbResponse.getServer()), k -> new InstanceStats());
+        stats.outstanding.updateAndGet(outstanding -> Math.max(0, outstanding - 1));
+        long now = clock.getAsLong();
+        long latency = now - completionContext.getLoadBalancerRequest().getContext().getRequestStartTime();
+        ResponseData response = completionContext.getClientResponse();
+        boolean failed = completionContext.status() == CompletionContext.Status.FAILED
+                || response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError();
+        stats.observe(now, failed ? Math.max(latency, errorPenaltyNanos) : latency, decayNanos);
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getInstanceId() != null
+                ? instance.getInstanceId()
+                : instance.getServiceId() + "@" + instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static final class InstanceStats {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicReference<Ewma> ewma = new AtomicReference<>(new Ewma(0, 0));
+
+        double latency(long now, long decayNanos) {
+            return ewma.get().at(now, decayNanos);
+        }
+
+        void observe(long now, long latencyNanos, long decayNanos) {
+            ewma.updateAndGet(current -> {
+                double decayed = current.at(now, decayNanos);
+                if (latencyNanos >= decayed) {
+                    return new Ewma(latencyNanos, now);
+                }
+                double weight = Math.exp(-Math.max(0, now - current.stamp()) / (double) decayNanos);
+                return new Ewma(current.value() * weight + latencyNanos * (1 - weight), now);
+            });
+        }
+    }
+
+    private record Ewma(double value, long stamp) {
+        double at(long now, long decayNanos) {
+            return value * Math.exp(-Math.max(0, now - stamp) / (double) decayNanos);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.fitness.common.loadbalancer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer for every service's child context, registered through a
+ * service's {@code @LoadBalancerClients} default configuration. Deliberately
+ * not a @Configuration so it never lands in the application context itself. With
+ * loadbalancer.peak-ewma.enabled=false the default round robin is used.
+ */
+public class PeakEwmaLoadBalancerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(value = "loadbalancer.peak-ewma.enabled", havingValue = "true", matchIfMissing = true)
+    public ReactorLoadBalancer<ServiceInstance> peakEwmaLoadBalancer(Environment environment,
+                                                                     LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                     InstanceLatencyStats stats) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new PeakEwmaLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), serviceId, stats);
+    }
+}
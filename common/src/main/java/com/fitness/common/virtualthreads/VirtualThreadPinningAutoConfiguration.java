@@ -0,0 +1,15 @@
+package com.fitness.common.virtualthreads;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Starts {@link VirtualThreadPinningMonitor} in every service that depends on
+ * this module and runs on virtual threads (spring.threads.virtual.enabled).
+ */
+@AutoConfiguration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Import(VirtualThreadPinningMonitor.class)
+public class VirtualThreadPinningAutoConfiguration {
+}
@@ -0,0 +1,101 @@
+package com.fitness.common.virtualthreads;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Watches the JFR jdk.VirtualThreadPinned event, raised when a virtual thread
+ * blocks while it cannot unmount from its carrier (inside synchronized or a
+ * native frame) for longer than virtual-threads.pinning-monitor.threshold.
+ * Pinnings are counted per first non-JDK frame as jvm.threads.virtual.pinned,
+ * and the stack of each new hotspot is logged at most once per log-interval.
+ * Registered by {@link VirtualThreadPinningAutoConfiguration}.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration threshold;
+    private final Duration logInterval;
+    private final Map<String, Long> lastLogged = new ConcurrentHashMap<>();
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${virtual-threads.pinning-monitor.enabled:true}") boolean enabled,
+                                       @Value("${virtual-threads.pinning-monitor.threshold:20ms}") Duration threshold,
+                                       @Value("${virtual-threads.pinning-monitor.log-interval:1m}") Duration logInterval) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.logInterval = logInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::pinned);
+            recording.startAsync();
+        } catch (Exception e) {
+            log.warn("Unable to start virtual thread pinning monitor: {}", e.getMessage());
+        }
+    }
+
+    private void pinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String hotspot = "unknown";
+        if (stackTrace != null) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                    hotspot = type + "." + frame.getMethod().getName();
+                    break;
+                }
+            }
+        }
+        Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .tag("frame", hotspot)
+                .register(meterRegistry)
+                .increment();
+
+        long now = System.nanoTime();
+        long logged = lastLogged.compute(hotspot, (key, last) ->
+                last == null || now - last > logInterval.toNanos() ? now : last);
+        if (logged == now) {
+            log.warn("Virtual thread pinned for {} ms at {}:\n{}", event.getDuration().toMillis(), hotspot,
+                    stackTrace == null ? "" : stackTrace.getFrames().stream()
+                            .limit(12)
+                            .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                                    + "(line " + frame.getLineNumber() + ")")
+                            .collect(Collectors.joining("\n")));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.fitness.common.amqp;
+
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Encodes with the producer's type and decodes into a different consumer
+ * type, the way activityservice and aiservice share activity.queue.
+ */
+class SmileMessageConverterTest {
+    private final SmileMessageConverter converter = new SmileMessageConverter();
+
+    @Test
+    void decodesIntoTheListenerParameterType() {
+        Message message = converter.toMessage(new Published("a1", 30, LocalDateTime.of(2026, 3, 4, 7, 30), "internal"),
+                new MessageProperties());
+        message.getMessageProperties().setInferredArgumentType(Consumed.class);
+
+        Consumed consumed = (Consumed) converter.fromMessage(message);
+
+        assertThat(consumed).isEqualTo(new Consumed("a1", 30, LocalDateTime.of(2026, 3, 4, 7, 30)));
+    }
+
+    @Test
+    void carriesTheContractVersionInsteadOfClassNames() {
+        Message message = converter.toMessage(new Published("a1", 30, null, null), new MessageProperties());
+        MessageProperties properties = message.getMessageProperties();
+
+        assertThat(properties.getContentType()).isEqualTo(SmileMessageConverter.CONTENT_TYPE);
+        assertThat(properties.<Integer>getHeader(SmileMessageConverter.CONTRACT_VERSION_HEADER))
+                .isEqualTo(SmileMessageConverter.CONTRACT_VERSION);
+        assertThat(properties.getHeaders()).doesNotContainKey(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+    }
+
+    @Test
+    void withoutAnArgumentTypeTheBodyIsDecodedAsAMap() {
+        Message message = converter.toMessage(new Published("a1", 30, null, null), new MessageProperties());
+
+        assertThat(converter.fromMessage(message)).isInstanceOf(Map.class)
+                .asInstanceOf(InstanceOfAssertFactories.MAP).containsEntry("id", "a1");
+    }
+
+    record Published(String id, Integer duration, LocalDateTime startTime, String relayOwner) {
+    }
+
+    record Consumed(String id, Integer duration, LocalDateTime startTime) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.fitness.common.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Discrete-event simulation of five AI-SERVICE instances behind the gateway,
+ * on a virtual clock: Poisson arrivals, log-normal service times, and every
+ * choice and completion passing through the same load balancer lifecycle as
+ * an lb:// route. Round robin keeps giving a degraded instance a fifth of
+ * the traffic; peak EWMA with two random choices only probes it now and then.
+ */
+class PeakEwmaLoadBalancerSimulationTest {
+    private static final String SERVICE_ID = "AI-SERVICE";
+    private static final int REQUESTS_PER_SECOND = 50;
+    private static final Duration SIMULATED = Duration.ofMinutes(10);
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final List<ServiceInstance> instances = IntStream.range(0, 5)
+            .mapToObj(i -> (ServiceInstance) new DefaultServiceInstance(SERVICE_ID + "-" + i, SERVICE_ID, "10.0.0." + i, 8083, false))
+            .toList();
+
+    @Test
+    void slowInstanceNoLongerDominatesTailLatency() {
+        Backend slowLastInstance = (instance, random) -> new Outcome(
+                jitter(instance == 4 ? TimeUnit.SECONDS.toNanos(2) : FAST_NANOS, random), false);
+
+        Result roundRobin = simulate(slowLastInstance, Duration.ofSeconds(1), false);
+        Result peakEwma = simulate(slowLastInstance, Duration.ofSeconds(1), true);
+
+        assertThat(roundRobin.percentileMillis(0.99)).isGreaterThan(1000);
+        assertThat(peakEwma.percentileMillis(0.99)).isLessThan(250)
+                .isLessThan(roundRobin.percentileMillis(0.99) / 4);
+        assertThat(peakEwma.percentileMillis(0.5)).isLessThanOrEqualTo(roundRobin.percentileMillis(0.5));
+        assertThat(peakEwma.share(4)).isLessThan(0.01);
+    }
+
+    @Test
+    void errorPenaltyKeepsTrafficAwayFromFastFailingInstance() {
+        Backend failingLastInstance = (instance, random) -> instance == 4
+                ? new Outcome(jitter(TimeUnit.MILLISECONDS.toNanos(5), random), true)
+                : new Outcome(jitter(FAST_NANOS, random), false);
+
+        Result roundRobin = simulate(failingLastInstance, Duration.ofSeconds(1), false);
+        Result withoutPenalty = simulate(failingLastInstance, Duration.ZERO, true);
+        Result withPenalty = simulate(failingLastInstance, Duration.ofSeconds(1), true);
+
+        assertThat(roundRobin.errorRate()).isGreaterThan(0.19);
+        assertThat(withoutPenalty.errorRate()).isGreaterThan(roundRobin.errorRate());
+        assertThat(withPenalty.errorRate()).isLessThan(0.01)
+                .isLessThan(roundRobin.errorRate() / 10);
+        assertThat(withPenalty.share(4)).isLessThan(roundRobin.share(4));
+    }
+
+    private Result simulate(Backend backend, Duration errorPenalty, boolean peakEwma) {
+        long[] clock = {0};
+        InstanceLatencyStats stats = new InstanceLatencyStats(Duration.ofSeconds(10), errorPenalty, () -> clock[0]);
+        ReactorServiceInstanceLoadBalancer loadBalancer = peakEwma
+                ? new PeakEwmaLoadBalancer(ServiceInstanceListSuppliers.toProvider(SERVICE_ID, instances.toArray(ServiceInstance[]::new)), SERVICE_ID, stats)
+                : new RoundRobinLoadBalancer(ServiceInstanceListSuppliers.toProvider(SERVICE_ID, instances.toArray(ServiceInstance[]::new)), SERVICE_ID);
+        Random random = new Random(42);
+        PriorityQueue<Completion> inFlight = new PriorityQueue<>(Comparator.comparingLong(Completion::at));
+        int total = (int) (SIMULATED.toSeconds() * REQUESTS_PER_SECOND);
+        long[] latencies = new long[total];
+        int[] perInstance = new int[instances.size()];
+        int errors = 0;
+        long arrival = 0;
+        for (int i = 0; i < total; i++) {
+            arrival += (long) (-Math.log(1 - random.nextDouble()) * TimeUnit.SECONDS.toNanos(1) / REQUESTS_PER_SECOND);
+            while (!inFlight.isEmpty() && inFlight.peek().at() <= arrival) {
+                Completion completion = inFlight.poll();
+                clock[0] = completion.at();
+                stats.onComplete(completion.context());
+            }
+            clock[0] = arrival;
+            Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext());
+            Response<ServiceInstance> chosen = loadBalancer.choose(request).block();
+            stats.onStartRequest(request, chosen);
+            int instance = instances.indexOf(chosen.getServer());
+            Outcome outcome = backend.serve(instance, random);
+            perInstance[instance]++;
+            latencies[i] = outcome.latencyNanos();
+            if (outcome.failed()) {
+                errors++;
+            }
+            ResponseData response = new ResponseData(outcome.failed() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK,
+                    new HttpHeaders(), new LinkedMultiValueMap<>(), null);
+            inFlight.add(new Completion(arrival + outcome.latencyNanos(),
+                    new CompletionContext<>(CompletionContext.Status.SUCCESS, request, chosen, response)));
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies, perInstance, errors);
+    }
+
+    private static long jitter(long nanos, Random random) {
+        return (long) (nanos * Math.exp(0.25 * random.nextGaussian()));
+    }
+
+    private interface Backend {
+        Outcome serve(int instance, Random random);
+    }
+
+    private record Outcome(long latencyNanos, boolean failed) {
+    }
+
+    private record Completion(long at, CompletionContext<ResponseData, ServiceInstance, RequestDataContext> context) {
+    }
+
+    private record Result(long[] sortedLatencies, int[] perInstance, int errors) {
+        double percentileMillis(double quantile) {
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(quantile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+
+        double errorRate() {
+            return (double) errors / sortedLatencies.length;
+        }
+
+        double share(int instance) {
+            return (double) perInstance[instance] / sortedLatencies.length;
+        }
+    }
+}
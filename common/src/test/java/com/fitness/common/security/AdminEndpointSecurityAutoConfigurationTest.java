@@ -0,0 +1,98 @@
+package com.fitness.common.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AdminEndpointSecurityAutoConfigurationTest {
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(WebMvcAutoConfiguration.class,
+                    HttpMessageConvertersAutoConfiguration.class, SecurityAutoConfiguration.class,
+                    AdminEndpointSecurityAutoConfiguration.class))
+            .withUserConfiguration(TestEndpoints.class);
+
+    @Test
+    void adminEndpointsRequireTheAdminScope() {
+        contextRunner.run(context -> {
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+            mvc.perform(delete("/admin/cache")).andExpect(status().isUnauthorized());
+            mvc.perform(delete("/admin/cache").header("Authorization", "Bearer invalid")).andExpect(status().isUnauthorized());
+            mvc.perform(delete("/admin/cache").header("Authorization", "Bearer profile")).andExpect(status().isForbidden());
+            mvc.perform(delete("/admin/cache").header("Authorization", "Bearer gateway-admin")).andExpect(status().isOk());
+        });
+    }
+
+    @Test
+    void otherEndpointsStayOpenToTheGateway() {
+        contextRunner.run(context -> {
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+            mvc.perform(post("/api/things")).andExpect(status().isOk());
+        });
+    }
+
+    @Test
+    void adminScopeIsConfigurable() {
+        contextRunner.withPropertyValues("admin.scope=ops").run(context -> {
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+            mvc.perform(delete("/admin/cache").header("Authorization", "Bearer gateway-admin")).andExpect(status().isForbidden());
+            mvc.perform(delete("/admin/cache").header("Authorization", "Bearer ops")).andExpect(status().isOk());
+        });
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class TestEndpoints {
+
+        // the bearer token is the scope the decoded JWT carries
+        @Bean
+        JwtDecoder jwtDecoder() {
+            return token -> {
+                if ("invalid".equals(token)) {
+                    throw new BadJwtException("invalid token");
+                }
+                return new Jwt(token, Instant.now(), Instant.now().plusSeconds(60),
+                        Map.of("alg", "none"), Map.of("sub", "user-1", "scope", token));
+            };
+        }
+
+        @Bean
+        Endpoints endpoints() {
+            return new Endpoints();
+        }
+    }
+
+    @RestController
+    static class Endpoints {
+
+        @DeleteMapping("/admin/cache")
+        void clear() {
+        }
+
+        @PostMapping("/api/things")
+        void create() {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.fitness.common.virtualthreads;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pins a real virtual thread by sleeping inside synchronized, which blocks
+ * its carrier on JDK 21, and waits for the JFR stream to report it.
+ */
+class VirtualThreadPinningMonitorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private VirtualThreadPinningMonitor monitor;
+
+    @AfterEach
+    void stop() {
+        monitor.stop();
+    }
+
+    @Test
+    void countsPinningPerFirstApplicationFrame() throws Exception {
+        monitor = new VirtualThreadPinningMonitor(meterRegistry, true, Duration.ofMillis(10), Duration.ofMinutes(1));
+        monitor.start();
+
+        Thread.ofVirtual().start(VirtualThreadPinningMonitorTest::sleepWhilePinned).join();
+
+        Counter pinned = awaitPinned(Duration.ofSeconds(15));
+        assertThat(pinned).isNotNull();
+        assertThat(pinned.getId().getTag("frame"))
+                .isEqualTo(VirtualThreadPinningMonitorTest.class.getName() + ".sleepWhilePinned");
+        assertThat(pinned.count()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledMonitorRecordsNothing() throws Exception {
+        monitor = new VirtualThreadPinningMonitor(meterRegistry, false, Duration.ofMillis(10), Duration.ofMinutes(1));
+        monitor.start();
+
+        Thread.ofVirtual().start(VirtualThreadPinningMonitorTest::sleepWhilePinned).join();
+
+        assertThat(awaitPinned(Duration.ofSeconds(2))).isNull();
+    }
+
+    private Counter awaitPinned(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            Counter pinned = meterRegistry.find("jvm.threads.virtual.pinned").counter();
+            if (pinned != null) {
+                return pinned;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return null;
+    }
+
+    private static void sleepWhilePinned() {
+        synchronized (VirtualThreadPinningMonitorTest.class) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState } from 'react';
+import React, { useRef, useState } from 'react';
 import { 
   Box, 
   FormControl, 
@@ -29,6 +29,9 @@ const ActivityForm = ({ onActivityAdded }) => {
   });
   
   const [isSubmitting, setIsSubmitting] = useState(false);
+  // Retrying the same activity reuses its Idempotency-Key, so a request that
+  // was stored before the connection dropped is not stored twice
+  const lastSubmission = useRef({ payload: null, key: null });
   const [notification, setNotification] = useState({
     open: false,
     message: '',
@@ -64,8 +67,14 @@ const ActivityForm = ({ onActivityAdded }) => {
 
     setIsSubmitting(true);
     
+    const payload = JSON.stringify(activity);
+    if (lastSubmission.current.payload !== payload) {
+      lastSubmission.current = { payload, key: crypto.randomUUID() };
+    }
+
     try {
-      await addActivity(activity);
+      await addActivity(activity, lastSubmission.current.key);
+      lastSubmission.current = { payload: null, key: null };
       onActivityAdded();
       setActivity({ type: "Running", duration: "", caloriesBurned: "", additionalMetrics: {} });
       
@@ -1,4 +1,4 @@
-import { Card, CardContent, Grid, Typography, Box, Container, Chip, Avatar, Skeleton } from '@mui/material'
+import { Card, CardContent, Grid, Typography, Box, Container, Chip, Avatar, Skeleton, Button } from '@mui/material'
 import React, { useEffect, useState } from 'react'
 import { useNavigate } from 'react-router-dom';
 import { getActivities } from '../services/api';
@@ -18,6 +18,8 @@ import {
 const ActivityList = () => {
     const [activities, setActivities] = useState([]);
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const navigate = useNavigate()
 
     const getActivityIcon = (type) => {
@@ -50,6 +52,7 @@ const ActivityList = () => {
            const response = await getActivities();
            console.log('Activities fetched:', response.data);
            setActivities(response.data);
+           setNextCursor(response.nextCursor);
            setLoading(false);
         }catch(error){
             console.log(error);
@@ -57,6 +60,19 @@ const ActivityList = () => {
         }
     }
 
+    const loadMore = async () => {
+        setLoadingMore(true);
+        try{
+            const response = await getActivities(nextCursor);
+            setActivities((loaded) => [...loaded, ...response.data]);
+            setNextCursor(response.nextCursor);
+        }catch(error){
+            console.log(error);
+        }finally{
+            setLoadingMore(false);
+        }
+    }
+
     useEffect(() => {
         fetchActivity()
     },[])
@@ -375,6 +391,14 @@ const ActivityList = () => {
                 ))}
             </Grid>
 
+            {nextCursor && (
+                <Box sx={{ textAlign: 'center', mt: 4 }}>
+                    <Button variant="outlined" onClick={loadMore} disabled={loadingMore}>
+                        {loadingMore ? 'Loading...' : 'Load more'}
+                    </Button>
+                </Box>
+            )}
+
             {/* Empty State */}
             {activities.length === 0 && !loading && (
                 <Box sx={{ textAlign: 'center', py: 8 }}>
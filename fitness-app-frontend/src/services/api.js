@@ -32,7 +32,13 @@ api.interceptors.response.use(
     }
 )
 
-export const getActivities = () => api.get("/activities")
-export const addActivity = (activity) => api.post("/activities", activity)
+// GET /activities returns one page at a time; pass the nextCursor of the
+// previous page to load the one after it (null once there are no more)
+export const getActivities = async (cursor, limit = 50) => {
+    const response = await api.get("/activities", { params: { limit, cursor } })
+    return { ...response, nextCursor: response.headers['x-next-cursor'] || null }
+}
+export const addActivity = (activity, idempotencyKey) => api.post("/activities", activity,
+    idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined)
 export const getActivityDetail = (id) => api.get(`/activities/${id}`)
 export const getActivityRecommendation = (id) => api.get(`/recommendations/activity/${id}`)
\ No newline at end of file
@@ -1,82 +1,77 @@
 package com.fitness.gateway;
 
+import com.fitness.gateway.timing.ServerTiming;
 import com.fitness.gateway.user.RegisterRequest;
-import com.fitness.gateway.user.UserService;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
+import com.fitness.gateway.user.SyncedUserCache;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 import reactor.core.publisher.Mono;
 
+/**
+ * Makes sure the caller exists in USER-SERVICE before a request is routed to
+ * a backend, and passes the user id on as X-User-Id. The id is always the
+ * subject of the token; an X-User-Id sent by the client is removed, so
+ * backends can trust the header. Runs after Spring Security, so the claims
+ * come from the already verified {@link Jwt} principal instead of decoding
+ * the bearer token a second time. The time
+ * spent before it and in the sync are reported as the auth and sync phases
+ * of {@link ServerTiming}.
+ */
 @Component
-@Slf4j
 @RequiredArgsConstructor
 public class KeycloakUserSyncFilter implements WebFilter {
-    private final UserService userService;
+    private static final PathPattern ROUTED_PATHS = PathPatternParser.defaultInstance.parse("/api/**");
+    static final String USER_ID_HEADER = "X-User-Id";
 
-    @Override
-    public Mono<Void> filter(ServerWebExchange serverWebExchange, WebFilterChain chain) {
-        String token = serverWebExchange.getRequest().getHeaders().getFirst("Authorization");
-        String userId = serverWebExchange.getRequest().getHeaders().getFirst("X-User-Id");
-        RegisterRequest registerRequest = getUserDetails(token);
-
-        if (userId == null){
-            userId = registerRequest.getKeycloakId();
-        }
-
-        if (userId != null && token != null) {
-            String finalUserId = userId;
-            return userService.validateUser(userId)
-                    .flatMap(exists -> {
-                        if (!exists) {
-                            //Register
-
-                            if(registerRequest != null) {
-                                return userService.registerUser(registerRequest)
-                                        .then(Mono.empty());
-                            }else {
-                                return Mono.empty();
-                            }
-                        } else {
-                            log.info("User already exists, Skipping Sync.");
-                            return Mono.empty();
-                        }
-                    })
-                    .then(Mono.defer(() -> {
-                        ServerHttpRequest mutatedRequest = serverWebExchange.getRequest().mutate()
-                                .header("X-User-Id", finalUserId)
-                                .build();
-                        return chain.filter(serverWebExchange.mutate().request(mutatedRequest).build());
-                    }));
+    private final SyncedUserCache syncedUserCache;
 
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerWebExchange serverWebExchange = exchange.getRequest().getHeaders().containsKey(USER_ID_HEADER)
+                ? exchange.mutate().request(request -> request.headers(headers -> headers.remove(USER_ID_HEADER))).build()
+                : exchange;
+        if (!ROUTED_PATHS.matches(serverWebExchange.getRequest().getPath().pathWithinApplication())) {
+            return chain.filter(serverWebExchange);
         }
-        return chain.filter(serverWebExchange);
+        ServerTiming.sinceStart(serverWebExchange, "auth");
+        return serverWebExchange.getPrincipal()
+                .ofType(JwtAuthenticationToken.class)
+                .map(JwtAuthenticationToken::getToken)
+                .flatMap(jwt -> {
+                    String userId = jwt.getSubject();
+                    if (userId == null) {
+                        return chain.filter(serverWebExchange).thenReturn(true);
+                    }
+                    long syncStart = System.nanoTime();
+                    return syncedUserCache.ensureSynced(userId, () -> getUserDetails(jwt))
+                            .then(Mono.defer(() -> {
+                                ServerTiming.record(serverWebExchange, "sync", System.nanoTime() - syncStart);
+                                ServerHttpRequest mutatedRequest = serverWebExchange.getRequest().mutate()
+                                        .header(USER_ID_HEADER, userId)
+                                        .build();
+                                return chain.filter(serverWebExchange.mutate().request(mutatedRequest).build());
+                            }))
+                            .thenReturn(true);
+                })
+                .switchIfEmpty(Mono.defer(() -> chain.filter(serverWebExchange).thenReturn(true)))
+                .then();
     }
 
-    private RegisterRequest getUserDetails(String token) {
-        try {
-            String tokenWithoutBearer = token.replace("Bearer ", "").trim();
-            SignedJWT signedJWT = SignedJWT.parse(tokenWithoutBearer);
-            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
-
-            RegisterRequest registerRequest = new RegisterRequest();
-            registerRequest.setEmail(claims.getStringClaim("email"));
-            registerRequest.setKeycloakId(claims.getStringClaim("sub"));
-            registerRequest.setPassword("dummy@123123");
-            registerRequest.setFirstName(claims.getStringClaim("given_name"));
-            registerRequest.setLastName(claims.getStringClaim("family_name"));
-            return registerRequest;
-
-        }catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+    private static RegisterRequest getUserDetails(Jwt jwt) {
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail(jwt.getClaimAsString("email"));
+        registerRequest.setKeycloakId(jwt.getSubject());
+        registerRequest.setPassword("dummy@123123");
+        registerRequest.setFirstName(jwt.getClaimAsString("given_name"));
+        registerRequest.setLastName(jwt.getClaimAsString("family_name"));
+        return registerRequest;
     }
-
-
 }
@@ -1,5 +1,6 @@
 package com.fitness.gateway;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -16,12 +17,16 @@ import java.util.List;
 @EnableWebFluxSecurity
 public class SecurityConfig {
 
+    @Value("${gateway.user-sync.admin-scope:gateway-admin}")
+    private String adminScope;
+
     @Bean
     public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
         return http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(exchange -> exchange
-                        .pathMatchers("/actuators/*").permitAll()
+                        .pathMatchers("/actuator/**").permitAll()
+                        .pathMatchers("/admin/**").hasAuthority("SCOPE_" + adminScope)
                         .anyExchange().authenticated()
 
 
@@ -33,7 +38,8 @@ public class SecurityConfig {
         CorsConfiguration config = new CorsConfiguration();
         config.setAllowedOrigins(List.of("http://localhost:5173"));
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-User-ID"));
+        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-User-ID", "Idempotency-Key"));
+        config.setExposedHeaders(List.of("X-Next-Cursor", "Retry-After", "Server-Timing"));
         config.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/api/**", config);
@@ -0,0 +1,13 @@
+package com.fitness.gateway.loadbalancer;
+
+import com.fitness.common.loadbalancer.InstanceLatencyStats;
+import com.fitness.common.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+@Import(InstanceLatencyStats.class)
+public class LoadBalancerConfig {
+}
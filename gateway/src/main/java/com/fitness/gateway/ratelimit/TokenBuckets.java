@@ -0,0 +1,77 @@
+package com.fitness.gateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket per user for a single route, held in memory. Each bucket
+ * is a single AtomicLong with the time at which it would be full again, and
+ * taking a token is one compare-and-set that moves it one refill interval
+ * ahead, so concurrent requests never lock and buckets of different users
+ * share nothing. Refill needs no timer: the level is derived from the clock.
+ * A bucket untouched for as long as a full refill takes is full anyway, so
+ * it expires from the cache then without changing any outcome.
+ */
+public class TokenBuckets {
+    private final int capacity;
+    private final int refillPerMinute;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final long origin = System.nanoTime();
+    private final Cache<String, AtomicLong> buckets;
+
+    public TokenBuckets(int capacity, int refillPerMinute, long maxUsers) {
+        if (capacity < 1 || refillPerMinute < 1) {
+            throw new IllegalArgumentException("capacity and refillPerMinute must be positive");
+        }
+        this.capacity = capacity;
+        this.refillPerMinute = refillPerMinute;
+        this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.burstNanos = nanosPerToken * capacity;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofNanos(Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+    }
+
+    /**
+     * Takes a token from the user's bucket.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(String userId) {
+        return tryAcquire(userId, 1);
+    }
+
+    /**
+     * Takes {@code tokens} tokens from the user's bucket at once, or none.
+     *
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until they are available
+     */
+    public long tryAcquire(String userId, int tokens) {
+        if (tokens < 1 || tokens > capacity) {
+            throw new IllegalArgumentException("tokens must be between 1 and capacity " + capacity);
+        }
+        AtomicLong fullAt = buckets.get(userId, key -> new AtomicLong());
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + nanosPerToken * tokens;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean hasLimits(int capacity, int refillPerMinute) {
+        return this.capacity == capacity && this.refillPerMinute == refillPerMinute;
+    }
+}
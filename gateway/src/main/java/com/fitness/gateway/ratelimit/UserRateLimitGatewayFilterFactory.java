@@ -0,0 +1,81 @@
+package com.fitness.gateway.ratelimit;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits each user, identified by the token subject, to a burst of capacity
+ * requests per route, refilled at refillPerMinute. Only the listed methods
+ * take tokens, writes by default, and each takes tokensPerRequest of them, so
+ * a route accepting batches can charge a request as the items it may carry.
+ * Rejected requests get 429 with Retry-After in seconds. Buckets are kept per route id and survive route refreshes as
+ * long as the route's limits are unchanged.
+ */
+@Component
+@Slf4j
+public class UserRateLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<UserRateLimitGatewayFilterFactory.Config> {
+    private final Map<String, TokenBuckets> routes = new ConcurrentHashMap<>();
+    private final long maxUsers;
+
+    public UserRateLimitGatewayFilterFactory(@Value("${gateway.rate-limit.max-users:100000}") long maxUsers) {
+        super(Config.class);
+        this.maxUsers = maxUsers;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        if (config.getTokensPerRequest() < 1 || config.getTokensPerRequest() > config.getCapacity()) {
+            throw new IllegalArgumentException("UserRateLimit on route " + config.getRouteId()
+                    + ": tokensPerRequest must be between 1 and capacity " + config.getCapacity());
+        }
+        TokenBuckets buckets = routes.compute(config.getRouteId(), (routeId, existing) ->
+                existing != null && existing.hasLimits(config.getCapacity(), config.getRefillPerMinute())
+                        ? existing
+                        : new TokenBuckets(config.getCapacity(), config.getRefillPerMinute(), maxUsers));
+        return (exchange, chain) -> {
+            if (!config.getMethods().contains(exchange.getRequest().getMethod().name())) {
+                return chain.filter(exchange);
+            }
+            return exchange.getPrincipal()
+                    .map(Principal::getName)
+                    .map(user -> buckets.tryAcquire(user, config.getTokensPerRequest()))
+                    .defaultIfEmpty(0L)
+                    .flatMap(wait -> wait == 0
+                            ? chain.filter(exchange)
+                            : reject(exchange, config.getRouteId(), wait));
+        };
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, String routeId, long waitNanos) {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        log.debug("Rate limited {} {} on route {}, retry after {}s",
+                exchange.getRequest().getMethod(), exchange.getRequest().getPath(), routeId, retryAfter);
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        return exchange.getResponse().setComplete();
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int capacity = 20;
+        private int refillPerMinute = 30;
+        private int tokensPerRequest = 1;
+        private List<String> methods = List.of("POST", "PUT", "PATCH", "DELETE");
+    }
+}
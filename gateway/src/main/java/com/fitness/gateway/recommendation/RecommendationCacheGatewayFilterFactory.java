@@ -0,0 +1,157 @@
+package com.fitness.gateway.recommendation;
+
+import com.fitness.gateway.recommendation.RecommendationResponseCache.CachedResponse;
+import com.fitness.gateway.recommendation.RecommendationResponseCache.Fetch;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves GET /api/recommendations/activity/{id} and /user/{userId} from
+ * {@link RecommendationResponseCache}. Responses carry an ETag, and a request
+ * whose If-None-Match matches gets 304 without a body, whether the entry was
+ * cached or just fetched. X-Cache tells HIT from MISS, and a cached page of
+ * user recommendations keeps its X-Next-Cursor. Other requests on the
+ * route, including the NDJSON export, pass through untouched.
+ */
+@Component
+public class RecommendationCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+    private static final PathPattern ACTIVITY = PathPatternParser.defaultInstance.parse("/api/recommendations/activity/{id}");
+    private static final PathPattern USER = PathPatternParser.defaultInstance.parse("/api/recommendations/user/{id}");
+    private static final String CACHE_HEADER = "X-Cache";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private final RecommendationResponseCache responseCache;
+
+    public RecommendationCacheGatewayFilterFactory(RecommendationResponseCache responseCache) {
+        super(Object.class);
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public GatewayFilter apply(Object config) {
+        // Has to wrap the response before NettyWriteResponseFilter writes the backend body into it
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            String key = cacheKey(exchange.getRequest());
+            if (key == null) {
+                return chain.filter(exchange);
+            }
+            String variant = exchange.getRequest().getURI().getRawPath()
+                    + "?" + String.valueOf(exchange.getRequest().getURI().getRawQuery());
+            CachedResponse cached = responseCache.get(key, variant);
+            if (cached != null) {
+                return writeCached(exchange, cached);
+            }
+            Fetch fetch = responseCache.startFetch();
+            return chain.filter(exchange.mutate()
+                    .response(new CachingResponse(exchange, key, variant, fetch))
+                    .build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private static String cacheKey(ServerHttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+        PathContainer path = request.getPath().pathWithinApplication();
+        PathPattern.PathMatchInfo activity = ACTIVITY.matchAndExtract(path);
+        if (activity != null) {
+            return RecommendationResponseCache.activityKey(activity.getUriVariables().get("id"));
+        }
+        PathPattern.PathMatchInfo user = USER.matchAndExtract(path);
+        return user == null ? null : RecommendationResponseCache.userKey(user.getUriVariables().get("id"));
+    }
+
+    private static Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(cached.etag());
+        headers.setCacheControl(CACHE_CONTROL);
+        headers.set(CACHE_HEADER, "HIT");
+        if (notModified(exchange.getRequest(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, cached.contentType());
+        }
+        if (cached.nextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, cached.nextCursor());
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+
+    private static boolean notModified(ServerHttpRequest request, String etag) {
+        for (String candidate : request.getHeaders().getIfNoneMatch()) {
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class CachingResponse extends ServerHttpResponseDecorator {
+        private final ServerWebExchange exchange;
+        private final String key;
+        private final String variant;
+        private final Fetch fetch;
+
+        CachingResponse(ServerWebExchange exchange, String key, String variant, Fetch fetch) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.key = key;
+            this.variant = variant;
+            this.fetch = fetch;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (getStatusCode() != HttpStatus.OK) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(Flux.from(body)).flatMap(joined -> {
+                byte[] bytes = new byte[joined.readableByteCount()];
+                joined.read(bytes);
+                DataBufferUtils.release(joined);
+                HttpHeaders headers = getHeaders();
+                String etag = "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+                CachedResponse fetched = new CachedResponse(bytes, headers.getFirst(HttpHeaders.CONTENT_TYPE),
+                        headers.getFirst(NEXT_CURSOR_HEADER), etag);
+                responseCache.put(key, variant, fetched, fetch);
+                headers.setETag(etag);
+                headers.setCacheControl(CACHE_CONTROL);
+                headers.set(CACHE_HEADER, "MISS");
+                headers.remove(HttpHeaders.TRANSFER_ENCODING);
+                if (notModified(exchange.getRequest(), etag)) {
+                    headers.remove(HttpHeaders.CONTENT_TYPE);
+                    headers.remove(HttpHeaders.CONTENT_LENGTH);
+                    setStatusCode(HttpStatus.NOT_MODIFIED);
+                    return setComplete();
+                }
+                headers.setContentLength(bytes.length);
+                return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+            });
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.fitness.gateway.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Every gateway instance binds its own auto-delete queue to AI-SERVICE's
+ * recommendation events fanout exchange, and
+ * {@link RecommendationEventsListener} evicts the named entries from
+ * {@link RecommendationResponseCache}. Events published while the broker
+ * connection was down are lost, so the cache is cleared whenever the
+ * connection is re-established.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RecommendationEventsConfig {
+    private final RecommendationResponseCache responseCache;
+
+    @Value("${rabbitmq.recommendation-events.exchange:recommendation.written}")
+    private String exchange;
+
+    @Bean
+    public FanoutExchange recommendationEventsExchange() {
+        return new FanoutExchange(exchange);
+    }
+
+    @Bean
+    public AnonymousQueue recommendationEventsQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding recommendationEventsBinding(AnonymousQueue recommendationEventsQueue,
+                                               FanoutExchange recommendationEventsExchange) {
+        return BindingBuilder.bind(recommendationEventsQueue).to(recommendationEventsExchange);
+    }
+
+    @Bean
+    public MessageConverter messageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    @Bean
+    public ConnectionListener recommendationCacheConnectionListener(ConnectionFactory connectionFactory) {
+        AtomicBoolean connectedBefore = new AtomicBoolean();
+        ConnectionListener listener = connection -> {
+            if (connectedBefore.getAndSet(true)) {
+                responseCache.evictAll();
+            }
+        };
+        connectionFactory.addConnectionListener(listener);
+        return listener;
+    }
+}
@@ -0,0 +1,25 @@
+package com.fitness.gateway.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts the entries named by each recommendation event. Kept apart from
+ * {@link RecommendationEventsConfig} because the listener's queue expression
+ * resolves a bean that configuration class is still creating.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RecommendationEventsListener {
+    private final RecommendationResponseCache responseCache;
+
+    @RabbitListener(queues = "#{recommendationEventsQueue.name}")
+    public void recommendationWritten(RecommendationWrittenEvent event) {
+        responseCache.evict(event.getActivityIds(), event.getUserIds());
+        log.debug("Evicted cached recommendations for activities {} and users {}",
+                event.getActivityIds(), event.getUserIds());
+    }
+}
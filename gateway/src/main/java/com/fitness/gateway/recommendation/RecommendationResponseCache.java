@@ -0,0 +1,122 @@
+package com.fitness.gateway.recommendation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded store of AI-SERVICE recommendation responses, keyed by the resource
+ * they describe ("activity:{id}" or "user:{userId}") and then by path and
+ * query, so one event evicts every page of a user at once. Entries are
+ * weighed by body size against gateway.recommendation-cache.max-bytes and
+ * expire after gateway.recommendation-cache.ttl as a backstop for lost events.
+ * Every eviction stamps its key with a fresh value of a shared counter, and a
+ * response is stored only if no stamp on its own key is newer than the
+ * counter when its fetch began. A read racing a write to the same resource
+ * therefore cannot put the old recommendation back, while evictions of other
+ * users and activities do not cost it its entry. Stamps are kept for
+ * {@link #STAMP_RETENTION}; a fetch older than that is not stored.
+ */
+@Component
+@Slf4j
+public class RecommendationResponseCache {
+    static final Duration STAMP_RETENTION = Duration.ofMinutes(1);
+
+    private final Cache<String, Map<String, CachedResponse>> responses;
+    private final Cache<String, Long> evictedAt = Caffeine.newBuilder()
+            .expireAfterWrite(STAMP_RETENTION)
+            .build();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long clearedAt;
+
+    public RecommendationResponseCache(@Value("${gateway.recommendation-cache.max-bytes:67108864}") long maxBytes,
+                                       @Value("${gateway.recommendation-cache.ttl:10m}") Duration ttl) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Map<String, CachedResponse> variants) -> weigh(key, variants))
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public CachedResponse get(String key, String variant) {
+        Map<String, CachedResponse> variants = responses.getIfPresent(key);
+        return variants == null ? null : variants.get(variant);
+    }
+
+    /**
+     * Marks the start of a fetch; pass it back to {@link #put} with the response.
+     */
+    public Fetch startFetch() {
+        return new Fetch(generation.get(), System.nanoTime());
+    }
+
+    public void put(String key, String variant, CachedResponse response, Fetch fetch) {
+        if (System.nanoTime() - fetch.startedAt() >= STAMP_RETENTION.toNanos()) {
+            return;
+        }
+        responses.asMap().compute(key, (k, variants) -> {
+            if (!current(k, fetch.generation())) {
+                return variants;
+            }
+            Map<String, CachedResponse> updated = variants == null ? new HashMap<>() : new HashMap<>(variants);
+            updated.put(variant, response);
+            return Map.copyOf(updated);
+        });
+    }
+
+    public void evict(Set<String> activityIds, Set<String> userIds) {
+        if (activityIds != null) {
+            activityIds.forEach(id -> evict(activityKey(id)));
+        }
+        if (userIds != null) {
+            userIds.forEach(id -> evict(userKey(id)));
+        }
+    }
+
+    public void evictAll() {
+        clearedAt = generation.incrementAndGet();
+        responses.invalidateAll();
+        log.info("Recommendation response cache cleared");
+    }
+
+    // stamp before invalidating: a put computing after the invalidation sees the stamp
+    private void evict(String key) {
+        evictedAt.put(key, generation.incrementAndGet());
+        responses.invalidate(key);
+    }
+
+    private boolean current(String key, long fetchedAt) {
+        Long evicted = evictedAt.getIfPresent(key);
+        return fetchedAt >= clearedAt && (evicted == null || evicted <= fetchedAt);
+    }
+
+    public static String activityKey(String activityId) {
+        return "activity:" + activityId;
+    }
+
+    public static String userKey(String userId) {
+        return "user:" + userId;
+    }
+
+    private static int weigh(String key, Map<String, CachedResponse> variants) {
+        long bytes = key.length();
+        for (Map.Entry<String, CachedResponse> variant : variants.entrySet()) {
+            bytes += variant.getKey().length() + variant.getValue().body().length + 64;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    public record CachedResponse(byte[] body, String contentType, String nextCursor, String etag) {
+    }
+
+    public record Fetch(long generation, long startedAt) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.fitness.gateway.recommendation;
+
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * Mirrors AI-SERVICE's event announcing stored recommendations.
+ */
+@Data
+public class RecommendationWrittenEvent {
+    private Set<String> activityIds;
+    private Set<String> userIds;
+}
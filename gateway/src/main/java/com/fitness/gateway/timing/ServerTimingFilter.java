@@ -0,0 +1,35 @@
+package com.fitness.gateway.timing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Starts the {@link ServerTiming} of every request ahead of Spring Security
+ * and writes the Server-Timing header just before the response is committed,
+ * so rejected requests report their auth time too. Off with
+ * gateway.server-timing.enabled=false.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter implements WebFilter {
+
+    @Value("${gateway.server-timing.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        ServerTiming timing = ServerTiming.start(exchange);
+        exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() ->
+                exchange.getResponse().getHeaders().add(ServerTiming.HEADER, timing.header())));
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,68 @@
+package com.fitness.gateway.user;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which keycloak ids USER-SERVICE already knows, so only the first
+ * request of a user within gateway.user-sync.cache-ttl validates or registers
+ * it. Concurrent requests for the same user share one in-flight validation
+ * and registration, and the registration details are only built on that
+ * path. Only users that exist are cached; failed or negative lookups are
+ * retried on the next request. {@link #evict} drops entries for users deleted
+ * or changed in USER-SERVICE before their TTL runs out.
+ */
+@Component
+@Slf4j
+public class SyncedUserCache {
+    private final UserService userService;
+    private final AsyncCache<String, Boolean> synced;
+
+    public SyncedUserCache(UserService userService,
+                           @Value("${gateway.user-sync.max-entries:100000}") long maxEntries,
+                           @Value("${gateway.user-sync.cache-ttl:10m}") Duration ttl) {
+        this.userService = userService;
+        this.synced = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    public Mono<Void> ensureSynced(String userId, Supplier<RegisterRequest> registerRequest) {
+        CompletableFuture<Boolean> sync = synced.get(userId, (key, executor) -> userService.validateUser(key)
+                .flatMap(exists -> {
+                    if (exists) {
+                        log.info("User already exists, Skipping Sync.");
+                        return Mono.just(true);
+                    }
+                    RegisterRequest request = registerRequest.get();
+                    return request == null
+                            ? Mono.just(false)
+                            : userService.registerUser(request).thenReturn(true);
+                })
+                .toFuture());
+        return Mono.fromFuture(sync, true)
+                .doOnNext(exists -> {
+                    if (!exists) {
+                        synced.asMap().remove(userId, sync);
+                    }
+                })
+                .then();
+    }
+
+    public void evict(String userId) {
+        synced.synchronous().invalidate(userId);
+    }
+
+    public void evictAll() {
+        synced.synchronous().invalidateAll();
+    }
+}
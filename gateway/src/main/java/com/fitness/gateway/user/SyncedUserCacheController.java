@@ -0,0 +1,32 @@
+package com.fitness.gateway.user;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Eviction hook for {@link SyncedUserCache}, for USER-SERVICE or an operator
+ * to call after deleting a user. Restricted to tokens carrying the
+ * gateway.user-sync.admin-scope scope in SecurityConfig.
+ */
+@RestController
+@RequestMapping("/admin/user-sync-cache")
+@AllArgsConstructor
+public class SyncedUserCacheController {
+    private SyncedUserCache syncedUserCache;
+
+    @DeleteMapping("/{keycloakId}")
+    public ResponseEntity<Void> evict(@PathVariable String keycloakId){
+        syncedUserCache.evict(keycloakId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> evictAll(){
+        syncedUserCache.evictAll();
+        return ResponseEntity.noContent().build();
+    }
+}
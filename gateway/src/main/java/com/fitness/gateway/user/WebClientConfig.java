@@ -1,5 +1,6 @@
 package com.fitness.gateway.user;
 
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,9 +11,9 @@ public class WebClientConfig {
 
     @Bean
     @LoadBalanced
-    public WebClient.Builder webClientBuilder(){
-
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ObservationRegistry observationRegistry){
+        // records http.client.requests per service and uri template
+        return WebClient.builder().observationRegistry(observationRegistry);
     }
 
     @Bean
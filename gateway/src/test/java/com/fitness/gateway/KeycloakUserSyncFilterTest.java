@@ -0,0 +1,84 @@
+package com.fitness.gateway;
+
+import com.fitness.gateway.user.SyncedUserCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeycloakUserSyncFilterTest {
+    private final SyncedUserCache syncedUserCache = mock(SyncedUserCache.class);
+    private final KeycloakUserSyncFilter filter = new KeycloakUserSyncFilter(syncedUserCache);
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+    private final WebFilterChain chain = exchange -> {
+        forwarded.set(exchange);
+        return Mono.empty();
+    };
+
+    @BeforeEach
+    void syncSucceeds() {
+        when(syncedUserCache.ensureSynced(anyString(), any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void userIdComesFromTheTokenSubjectNotTheClientHeader() {
+        MockServerWebExchange exchange = MockServerWebExchange.builder(MockServerHttpRequest.get("/api/activities")
+                        .header(KeycloakUserSyncFilter.USER_ID_HEADER, "someone-else"))
+                .principal(new JwtAuthenticationToken(jwt("subject-1")))
+                .build();
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded.get().getRequest().getHeaders().get(KeycloakUserSyncFilter.USER_ID_HEADER))
+                .containsExactly("subject-1");
+        verify(syncedUserCache).ensureSynced(eq("subject-1"), any());
+    }
+
+    @Test
+    void clientHeaderIsStrippedWithoutAToken() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/activities")
+                .header("x-user-id", "someone-else"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded.get().getRequest().getHeaders()).doesNotContainKey(KeycloakUserSyncFilter.USER_ID_HEADER);
+        verify(syncedUserCache, never()).ensureSynced(anyString(), any());
+    }
+
+    @Test
+    void clientHeaderIsStrippedOutsideTheRoutedPaths() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/admin/recommendation-cache")
+                .header(KeycloakUserSyncFilter.USER_ID_HEADER, "someone-else"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded.get().getRequest().getHeaders()).doesNotContainKey(KeycloakUserSyncFilter.USER_ID_HEADER);
+    }
+
+    private static Jwt jwt(String subject) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .claim("email", subject + "@example.com")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.fitness.gateway.loadtest;
+
+import com.fitness.gateway.ratelimit.TokenBuckets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link TokenBuckets#tryAcquire} from many threads at once,
+ * spread over tens of thousands of distinct users and, as the worst case for
+ * compare-and-set contention, all on one user. Prints acquisitions per second
+ * and the share that were rejected.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.gateway.loadtest.RateLimiterBenchmark -Dexec.args="50000 16 5"
+ * </pre>
+ */
+public class RateLimiterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int userCount = Integer.parseInt(args.length > 0 ? args[0] : "50000");
+        int threads = Integer.parseInt(args.length > 1 ? args[1] : "16");
+        int seconds = Integer.parseInt(args.length > 2 ? args[2] : "5");
+        String[] users = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = UUID.randomUUID().toString();
+        }
+        String[] hot = {users[0]};
+
+        System.out.println("users    threads      acquires/s  rejected");
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            run(users, threads, seconds, report);
+            run(hot, threads, seconds, report);
+        }
+    }
+
+    private static void run(String[] users, int threads, int seconds, boolean report) throws Exception {
+        TokenBuckets buckets = new TokenBuckets(20, 30, 100_000);
+        LongAdder acquires = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                long denied = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        if (buckets.tryAcquire(users[random.nextInt(users.length)]) != 0) {
+                            denied++;
+                        }
+                    }
+                    done += 1000;
+                }
+                acquires.add(done);
+                rejected.add(denied);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-8d %7d %15.0f %8.1f%%%n", users.length, threads,
+                    acquires.sum() / (double) seconds, 100.0 * rejected.sum() / Math.max(1, acquires.sum()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.fitness.gateway.loadtest;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.lang.management.ManagementFactory;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-request CPU time and allocation of the user sync filter's own work on
+ * a cache hit: re-parsing the bearer token with SignedJWT.parse, as the
+ * filter used to, against reading the subject of the Jwt principal Spring
+ * Security has already decoded. The token is shaped like a Keycloak access
+ * token. Measured on the calling thread with ThreadMXBean.
+ *
+ * <pre>
+ * mvn -q test-compile org.codehaus.mojo:exec-maven-plugin:3.5.0:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.fitness.gateway.loadtest.UserSyncFilterBenchmark
+ * </pre>
+ */
+public class UserSyncFilterBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(UUID.randomUUID().toString())
+                .issuer("http://localhost:8181/realms/fitness-oauth2")
+                .audience("account")
+                .claim("azp", "oauth2-pkce-client")
+                .claim("scope", "openid email profile")
+                .claim("email", "jane.doe@example.com")
+                .claim("given_name", "Jane")
+                .claim("family_name", "Doe")
+                .claim("preferred_username", "jane")
+                .claim("realm_access", Map.of("roles", List.of("offline_access", "uma_authorization", "default-roles-fitness-oauth2")))
+                .issueTime(new Date())
+                .expirationTime(new Date(System.currentTimeMillis() + 300_000))
+                .jwtID(UUID.randomUUID().toString())
+                .build();
+        SignedJWT signed = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("benchmark").build(), claims);
+        signed.sign(new RSASSASigner((RSAPrivateKey) generator.generateKeyPair().getPrivate()));
+        String authorization = "Bearer " + signed.serialize();
+        Jwt principal = Jwt.withTokenValue(signed.serialize())
+                .header("alg", "RS256")
+                .claims(values -> {
+                    values.putAll(claims.getClaims());
+                    values.put("iat", claims.getIssueTime().toInstant());
+                    values.put("exp", claims.getExpirationTime().toInstant());
+                })
+                .build();
+        PathPattern routed = PathPatternParser.defaultInstance.parse("/api/**");
+        PathContainer path = PathContainer.parsePath("/api/activities");
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int iterations = Integer.parseInt(args.length > 0 ? args[0] : "500000");
+        for (int round = 0; round < 3; round++) {
+            long bytes0 = threads.getCurrentThreadAllocatedBytes();
+            long cpu0 = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = reparse(authorization);
+            }
+            long bytes1 = threads.getCurrentThreadAllocatedBytes();
+            long cpu1 = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < iterations; i++) {
+                sink = routed.matches(path) ? principal.getSubject() : null;
+            }
+            long bytes2 = threads.getCurrentThreadAllocatedBytes();
+            long cpu2 = threads.getCurrentThreadCpuTime();
+            if (round == 2) {
+                System.out.printf(Locale.ROOT, "re-parse token   %8.3f us/request  %6d B/request%n",
+                        (cpu1 - cpu0) / 1e3 / iterations, (bytes1 - bytes0) / iterations);
+                System.out.printf(Locale.ROOT, "Jwt principal    %8.3f us/request  %6d B/request%n",
+                        (cpu2 - cpu1) / 1e3 / iterations, (bytes2 - bytes1) / iterations);
+            }
+        }
+    }
+
+    private static Object reparse(String authorization) {
+        try {
+            JWTClaimsSet claims = SignedJWT.parse(authorization.replace("Bearer ", "").trim()).getJWTClaimsSet();
+            return new String[]{claims.getStringClaim("email"), claims.getSubject(),
+                    claims.getStringClaim("given_name"), claims.getStringClaim("family_name")};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
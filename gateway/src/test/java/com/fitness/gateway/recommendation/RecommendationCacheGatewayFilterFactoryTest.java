@@ -0,0 +1,142 @@
+package com.fitness.gateway.recommendation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the recommendation cache filter over WebTestClient against a stub
+ * backend that counts its calls, so every assertion on X-Cache is backed by
+ * whether AI-SERVICE was actually reached.
+ */
+class RecommendationCacheGatewayFilterFactoryTest {
+    private static final String ACTIVITY_PATH = "/api/recommendations/activity/a1";
+    private static final String USER_PATH = "/api/recommendations/user/u1";
+    private static final String NEXT_CURSOR = "cursor-2";
+    private static final String BODY = "{\"activityId\":\"a1\",\"recommendation\":\"rest\"}";
+
+    private final RecommendationResponseCache cache = new RecommendationResponseCache(1 << 20, Duration.ofMinutes(10));
+    private final GatewayFilter filter = new RecommendationCacheGatewayFilterFactory(cache).apply(new Object());
+    private final AtomicInteger backendCalls = new AtomicInteger();
+    private Runnable duringFetch = () -> { };
+
+    private final WebTestClient client = WebTestClient.bindToWebHandler(exchange -> filter.filter(exchange, routed -> {
+        backendCalls.incrementAndGet();
+        duringFetch.run();
+        ServerHttpResponse response = routed.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        if (routed.getRequest().getPath().value().equals(USER_PATH)) {
+            response.getHeaders().set("X-Next-Cursor", NEXT_CURSOR);
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+    })).build();
+
+    @Test
+    void missThenHitServesTheStoredBody() {
+        String etag = client.get().uri(ACTIVITY_PATH).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Cache", "MISS")
+                .expectBody(String.class).isEqualTo(BODY)
+                .returnResult().getResponseHeaders().getETag();
+
+        client.get().uri(ACTIVITY_PATH).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Cache", "HIT")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(String.class).isEqualTo(BODY);
+
+        assertThat(etag).isNotNull();
+        assertThat(backendCalls).hasValue(1);
+    }
+
+    @Test
+    void cachedUserPageKeepsItsNextCursor() {
+        client.get().uri(USER_PATH).exchange()
+                .expectHeader().valueEquals("X-Cache", "MISS")
+                .expectHeader().valueEquals("X-Next-Cursor", NEXT_CURSOR);
+
+        client.get().uri(USER_PATH).exchange()
+                .expectHeader().valueEquals("X-Cache", "HIT")
+                .expectHeader().valueEquals("X-Next-Cursor", NEXT_CURSOR);
+        client.get().uri(ACTIVITY_PATH).exchange()
+                .expectHeader().doesNotExist("X-Next-Cursor");
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModifiedOnHitAndMiss() {
+        String etag = client.get().uri(ACTIVITY_PATH).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        client.get().uri(ACTIVITY_PATH).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("X-Cache", "HIT")
+                .expectBody().isEmpty();
+
+        cache.evictAll();
+        client.get().uri(ACTIVITY_PATH).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("X-Cache", "MISS")
+                .expectBody().isEmpty();
+
+        client.get().uri(ACTIVITY_PATH).header(HttpHeaders.IF_NONE_MATCH, "\"stale\"").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Cache", "HIT")
+                .expectBody(String.class).isEqualTo(BODY);
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void evictingTheResourceForcesAMiss() {
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "MISS");
+        cache.evict(Set.of("a1"), null);
+
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "MISS");
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void responseFetchedWhileItsOwnKeyWasEvictedIsNotStored() {
+        duringFetch = () -> cache.evict(Set.of("a1"), null);
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "MISS");
+
+        duringFetch = () -> { };
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "MISS");
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "HIT");
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void evictionsOfOtherResourcesDoNotDiscardAFetch() {
+        duringFetch = () -> cache.evict(Set.of("a2"), Set.of("u1"));
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "MISS");
+
+        client.get().uri(ACTIVITY_PATH).exchange().expectHeader().valueEquals("X-Cache", "HIT");
+        assertThat(backendCalls).hasValue(1);
+    }
+
+    @Test
+    void otherRequestsPassThroughUncached() {
+        client.get().uri("/api/recommendations/export").exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("X-Cache");
+        client.get().uri("/api/recommendations/export").exchange()
+                .expectHeader().doesNotExist("X-Cache");
+        assertThat(backendCalls).hasValue(2);
+    }
+}